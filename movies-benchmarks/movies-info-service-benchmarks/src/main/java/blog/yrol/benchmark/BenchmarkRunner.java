@@ -0,0 +1,26 @@
+package blog.yrol.benchmark;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Main class of benchmarks.jar - running the benchmarks with the GC profiler (-prof gc: allocation rate, bytes allocated per operation & GC count)
+ * Accepts the JMH command line options, ex: java -jar target/benchmarks.jar MovieInfoValidationBenchmark -f 1 -wi 3 -i 5 -prof stack
+ * **/
+public class BenchmarkRunner {
+
+    private static final List<String> GC_PROFILER = List.of("-prof", "gc");
+
+    public static void main(String[] args) throws Exception {
+        var arguments = new ArrayList<>(List.of(args));
+
+        if (Collections.indexOfSubList(arguments, GC_PROFILER) < 0) {
+            arguments.addAll(0, GC_PROFILER);
+        }
+
+        Main.main(arguments.toArray(String[]::new));
+    }
+}
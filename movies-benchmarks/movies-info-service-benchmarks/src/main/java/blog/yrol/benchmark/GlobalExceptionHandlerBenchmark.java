@@ -0,0 +1,59 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.controller.MoviesInfoController;
+import blog.yrol.domain.MovieInfo;
+import blog.yrol.exception.GlobalExceptionHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.bind.support.WebExchangeBindException;
+
+import javax.validation.Validation;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of the bean validation errors of a movie info into the 400 response (GlobalExceptionHandler.handleRequestBodyException)
+ * The binding result is the one WebFlux builds for an invalid MoviesInfoController.addMovieInfo request body (3 errors).
+ * The handler logs the exception, which the benchmark doesn't print (see logback.xml) - the message is still built on each call.
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GlobalExceptionHandlerBenchmark {
+
+    private GlobalExceptionHandler globalExceptionHandler;
+    private WebExchangeBindException exception;
+
+    @Setup
+    public void setUp() throws Exception {
+        globalExceptionHandler = new GlobalExceptionHandler();
+
+        var movieInfo = new MovieInfo(null, "", -2005, List.of(""), LocalDate.parse("2005-06-15"));
+        var bindingResult = new BeanPropertyBindingResult(movieInfo, "movieInfo");
+        new SpringValidatorAdapter(Validation.buildDefaultValidatorFactory().getValidator()).validate(movieInfo, bindingResult);
+
+        var parameter = new MethodParameter(MoviesInfoController.class.getMethod("addMovieInfo", MovieInfo.class), 0);
+        exception = new WebExchangeBindException(parameter, bindingResult);
+    }
+
+    @Benchmark
+    public ResponseEntity<String> handleRequestBodyException() {
+        return globalExceptionHandler.handleRequestBodyException(exception);
+    }
+}
@@ -0,0 +1,122 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.catalog.CatalogGenerator;
+import blog.yrol.catalog.CatalogLoader;
+import blog.yrol.catalog.EmbeddedMongo;
+import blog.yrol.catalog.GeneratedMovie;
+import blog.yrol.domain.MovieInfo;
+import blog.yrol.repository.MovieInfoRepository;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the movie info queries (MovieInfoRepository) at several catalog sizes, against a synthetic catalog (see CatalogGenerator) in an embedded Mongo DB
+ * The looked up movies are drawn by popularity (the most reviewed movies being the most looked up), the latency percentiles are reported per catalog size,
+ * ex: findByYear & findByName scan the whole collection (no index), hence grow with the catalog, unlike findById & the first page (_id index).
+ * Larger catalogs, ex: java -jar benchmarks.jar MovieInfoRepositoryScalingBenchmark -p movies=5000000
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class MovieInfoRepositoryScalingBenchmark {
+
+    private static final long SEED = 42;
+    private static final int LOOKUPS = 1024;
+    private static final String MONGO_VERSION = System.getProperty("catalog.mongo.version", EmbeddedMongo.DEFAULT_VERSION);
+
+    @Param({"10000", "100000", "1000000"})
+    private int movies;
+
+    private EmbeddedMongo mongo;
+    private MongoClient mongoClient;
+    private MovieInfoRepository movieInfoRepository;
+
+    // Movies looked up in turn (drawn by popularity)
+    private GeneratedMovie[] lookups;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        mongo = EmbeddedMongo.start(MONGO_VERSION);
+        mongoClient = MongoClients.create(mongo.getConnectionString());
+
+        var template = new ReactiveMongoTemplate(mongoClient, "movies-info-benchmark");
+        movieInfoRepository = new ReactiveMongoRepositoryFactory(template).getRepository(MovieInfoRepository.class);
+
+        var generator = new CatalogGenerator(SEED, movies, 0);
+        new CatalogLoader(template)
+                .load(generator.movies(), MovieInfoRepositoryScalingBenchmark::movieInfo, MovieInfo.class)
+                .block();
+
+        var random = new SplittableRandom(SEED);
+        lookups = new GeneratedMovie[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = generator.movie(generator.movieIdOfRank(generator.getMoviePopularity().sample(random.nextDouble())));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoClient.close();
+        mongo.close();
+    }
+
+    @Benchmark
+    public MovieInfo findById() {
+        return movieInfoRepository.findById(lookup().getMovieInfoId()).block();
+    }
+
+    @Benchmark
+    public List<MovieInfo> findByYear() {
+        return movieInfoRepository.findByYear(lookup().getYear()).collectList().block();
+    }
+
+    @Benchmark
+    public List<MovieInfo> findByName() {
+        return movieInfoRepository.findByName(lookup().getName()).collectList().block();
+    }
+
+    // Paged listing (GET /v1/moviesinfo?limit=100)
+    @Benchmark
+    public List<MovieInfo> findFirstPage() {
+        return movieInfoRepository.findAllBy(PageRequest.of(0, 100, Sort.by("movieInfoId"))).collectList().block();
+    }
+
+    // Unbounded listing (GET /v1/moviesinfo), counted rather than collected - the whole collection is still read & decoded
+    @Benchmark
+    public Long findAll() {
+        return movieInfoRepository.findAll().count().block();
+    }
+
+    private GeneratedMovie lookup() {
+        return lookups[next++ & (LOOKUPS - 1)];
+    }
+
+    private static MovieInfo movieInfo(GeneratedMovie movie) {
+        return new MovieInfo(movie.getMovieInfoId(), movie.getName(), movie.getYear(), movie.getCast(), movie.getReleaseDate());
+    }
+}
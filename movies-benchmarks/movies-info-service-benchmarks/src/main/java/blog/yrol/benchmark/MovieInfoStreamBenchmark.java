@@ -0,0 +1,182 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.MovieInfoServiceApplication;
+import blog.yrol.domain.MovieInfo;
+import blog.yrol.domain.MovieInfoEvent;
+import blog.yrol.service.MovieInfoEventPublisher;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of the movie info stream (GET /v1/moviesinfo/streams, NDJSON) to many concurrent subscribers, on the reactive stack (Reactor Netty & WebFlux)
+ * and on the servlet stack (Tomcat & Spring MVC - as the service ran while spring-boot-starter-web was on its class path, see the pom of this module)
+ * The service is started in the benchmark JVM on the given stack, the subscribers connect to the stream, then each operation publishes a movie info event
+ * (MovieInfoEventPublisher, as a POST / PUT would) and waits until every subscriber has received it, hence ops/s x subscribers - the events delivered per second.
+ * Memory - the heap retained per connected subscriber & the live threads, logged once the subscribers are connected (both include the client side,
+ * which is the same for the two stacks), and the GC count & time while fanning out (-prof gc).
+ * No Mongo DB is needed, since the events are published directly and the Mongo client connects in the background.
+ * More subscribers, ex: java -jar benchmarks.jar MovieInfoStreamBenchmark -p subscribers=8000
+ * **/
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class MovieInfoStreamBenchmark {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration DELIVERY_TIMEOUT = Duration.ofSeconds(30);
+
+    @Param({"reactive", "servlet"})
+    private String stack;
+
+    @Param({"100", "1000", "4000"})
+    private int subscribers;
+
+    private ConfigurableApplicationContext context;
+    private MovieInfoEventPublisher movieInfoEventPublisher;
+
+    private LoopResources clientLoops;
+    private ConnectionProvider connectionProvider;
+    private final List<Disposable> subscriptions = new ArrayList<>();
+
+    // Counted down by the subscribers on each event received, a new latch per published event
+    private volatile CountDownLatch delivered = new CountDownLatch(0);
+
+    private final MovieInfo movieInfo = new MovieInfo("abc", "The Dark Knight", 2008, List.of("Christian Bale", "Heath Ledger"), LocalDate.parse("2008-07-18"));
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        var application = new SpringApplicationBuilder(MovieInfoServiceApplication.class)
+                .web(WebApplicationType.valueOf(stack.toUpperCase()));
+
+        if ("reactive".equals(stack)) {
+            // Tomcat (on the class path for the servlet stack) would otherwise be picked over Reactor Netty for the reactive stack too
+            application.initializers(applicationContext -> ((GenericApplicationContext) applicationContext).registerBean(NettyReactiveWebServerFactory.class));
+        }
+
+        // As arguments, since the default properties of the builder are overridden by the ones of the service (ex: server.port of the dev profile)
+        context = application.run("--server.port=0", "--spring.main.banner-mode=off", "--logging.level.root=warn", "--logging.level.blog.yrol.benchmark=info",
+                // Streams still open when Tomcat stops, reported as errors by the error page dispatch
+                "--logging.level.org.apache.catalina.core=off",
+                // On the class path for the repository scaling benchmarks (movies-catalog), not needed here
+                "--spring.autoconfigure.exclude=" + EmbeddedMongoAutoConfiguration.class.getName());
+
+        movieInfoEventPublisher = context.getBean(MovieInfoEventPublisher.class);
+
+        // Own event loops for the subscribers, so that they don't share the event loops of Reactor Netty on the server side
+        clientLoops = LoopResources.create("stream-subscriber");
+        connectionProvider = ConnectionProvider.builder("stream-subscriber")
+                .maxConnections(subscribers)
+                .pendingAcquireMaxCount(-1)
+                .build();
+
+        var webClient = WebClient.builder()
+                .baseUrl(String.format("http://localhost:%s", context.getEnvironment().getProperty("local.server.port")))
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider).runOn(clientLoops)))
+                .build();
+
+        var heapBefore = heapUsedAfterGc();
+        var threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        for (int i = 0; i < subscribers; i++) {
+            subscriptions.add(webClient
+                    .get()
+                    .uri("/v1/moviesinfo/streams")
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .retrieve()
+                    // One line per movie info
+                    .bodyToFlux(String.class)
+                    .subscribe(line -> delivered.countDown()));
+        }
+
+        awaitSubscribers(context.getBean(MeterRegistry.class));
+
+        // First event through all the connections (ex: the response headers of the servlet stack written), before measuring the retained heap
+        publishToAllSubscribers();
+
+        var heapRetained = heapUsedAfterGc() - heapBefore;
+        var threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        log.info("{} stack, {} subscribers - heap retained per subscriber: {} KB, live threads: {} ({})", stack, subscribers,
+                String.format("%.1f", heapRetained / 1024.0 / subscribers), threads, String.format("%+d", threads - threadsBefore));
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscriptions.forEach(Disposable::dispose);
+        connectionProvider.dispose();
+        clientLoops.dispose();
+        context.close();
+    }
+
+    @Benchmark
+    public MovieInfoEvent publishToAllSubscribers() throws InterruptedException {
+        var latch = new CountDownLatch(subscribers);
+        delivered = latch;
+
+        var event = movieInfoEventPublisher.publish(movieInfo);
+
+        if (!latch.await(DELIVERY_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException(String.format("Event %s delivered to %s of %s subscribers within %s",
+                    event.getSequence(), subscribers - latch.getCount(), subscribers, DELIVERY_TIMEOUT));
+        }
+
+        return event;
+    }
+
+    // Subscribed on the server side (moviesinfo.stream.subscribers), hence the events published from now on reach every subscriber
+    private void awaitSubscribers(MeterRegistry meterRegistry) throws InterruptedException {
+        var gauge = meterRegistry.get("moviesinfo.stream.subscribers").gauge();
+        var deadline = System.nanoTime() + CONNECT_TIMEOUT.toNanos();
+
+        while (gauge.value() < subscribers) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(String.format("%s of %s subscribers connected within %s", (int) gauge.value(), subscribers, CONNECT_TIMEOUT));
+            }
+
+            Thread.sleep(10);
+        }
+    }
+
+    private static long heapUsedAfterGc() {
+        System.gc();
+        System.gc();
+
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
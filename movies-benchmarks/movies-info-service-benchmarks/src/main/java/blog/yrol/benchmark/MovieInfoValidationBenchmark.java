@@ -0,0 +1,55 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.domain.MovieInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean validation of a movie info (@Valid of MoviesInfoController.addMovieInfo), valid and with all of its constraints violated
+ * An invalid movie info is more expensive, since each violation interpolates its message and builds its property path.
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovieInfoValidationBenchmark {
+
+    private Validator validator;
+    private MovieInfo validMovieInfo;
+    private MovieInfo invalidMovieInfo;
+
+    @Setup
+    public void setUp() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        validMovieInfo = new MovieInfo(null, "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        invalidMovieInfo = new MovieInfo(null, "", -2005, List.of(""), LocalDate.parse("2005-06-15"));
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<MovieInfo>> validateValidMovieInfo() {
+        return validator.validate(validMovieInfo);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<MovieInfo>> validateInvalidMovieInfo() {
+        return validator.validate(invalidMovieInfo);
+    }
+}
@@ -0,0 +1,127 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.catalog.CatalogGenerator;
+import blog.yrol.catalog.CatalogLoader;
+import blog.yrol.catalog.EmbeddedMongo;
+import blog.yrol.catalog.GeneratedReview;
+import blog.yrol.domain.Review;
+import blog.yrol.domain.ReviewSummary;
+import blog.yrol.repository.ReviewReactiveRepository;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the review queries (ReviewReactiveRepository) at several catalog sizes, against a synthetic catalog (see CatalogGenerator) in an embedded Mongo DB
+ * Reviews are spread over the movies by popularity (Zipfian), and the looked up movies are drawn the same way, hence the popular movies - with the most reviews -
+ * are the most looked up. The latency percentiles are reported per catalog size (movies x reviews-per-movie reviews).
+ * All the queries of a movie are backed by the compound indexes of Review, hence they should grow with the reviews of the movie, not with the collection.
+ * Larger catalogs, ex: 50M reviews - java -jar benchmarks.jar ReviewRepositoryScalingBenchmark -p movies=1000000
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ReviewRepositoryScalingBenchmark {
+
+    private static final long SEED = 42;
+    private static final int LOOKUPS = 1024;
+    private static final String MONGO_VERSION = System.getProperty("catalog.mongo.version", EmbeddedMongo.DEFAULT_VERSION);
+
+    // Same sort as GET /v1/reviews?movieInfoId=&sort=rating
+    private static final Sort HIGHEST_RATED = Sort.by(Sort.Direction.DESC, "rating", "reviewId");
+
+    @Param({"1000", "10000", "100000"})
+    private int movies;
+
+    @Param({"50"})
+    private int reviewsPerMovie;
+
+    private EmbeddedMongo mongo;
+    private MongoClient mongoClient;
+    private ReviewReactiveRepository reviewReactiveRepository;
+
+    // Movies looked up in turn (drawn by popularity)
+    private long[] lookups;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        mongo = EmbeddedMongo.start(MONGO_VERSION);
+        mongoClient = MongoClients.create(mongo.getConnectionString());
+
+        var template = new ReactiveMongoTemplate(mongoClient, "movies-review-benchmark");
+        reviewReactiveRepository = new ReactiveMongoRepositoryFactory(template).getRepository(ReviewReactiveRepository.class);
+
+        var generator = new CatalogGenerator(SEED, movies, reviewsPerMovie);
+        new CatalogLoader(template)
+                .load(generator.reviews(), ReviewRepositoryScalingBenchmark::review, Review.class)
+                .block();
+
+        var random = new SplittableRandom(SEED);
+        lookups = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = generator.movieIdOfRank(generator.getMoviePopularity().sample(random.nextDouble()));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoClient.close();
+        mongo.close();
+    }
+
+    // All the reviews of a movie (GET /v1/reviews?movieInfoId=)
+    @Benchmark
+    public List<Review> findReviewsByMovieInfoId() {
+        return reviewReactiveRepository.findReviewsByMovieInfoId(String.valueOf(lookup())).collectList().block();
+    }
+
+    // Top 10 of a movie (GET /v1/reviews?movieInfoId=&sort=rating&limit=10)
+    @Benchmark
+    public List<Review> findHighestRated() {
+        return reviewReactiveRepository.findByMovieInfoId(lookup(), PageRequest.of(0, 10, HIGHEST_RATED)).collectList().block();
+    }
+
+    // Rating summary of a movie (GET /v1/reviews/summary?movieInfoId=)
+    @Benchmark
+    public ReviewSummary summarizeReviewsByMovieInfoId() {
+        return reviewReactiveRepository.summarizeReviewsByMovieInfoId(lookup()).block();
+    }
+
+    // Paged listing (GET /v1/reviews?limit=100)
+    @Benchmark
+    public List<Review> findFirstPage() {
+        return reviewReactiveRepository.findAllBy(PageRequest.of(0, 100, Sort.by("reviewId"))).collectList().block();
+    }
+
+    private long lookup() {
+        return lookups[next++ & (LOOKUPS - 1)];
+    }
+
+    private static Review review(GeneratedReview review) {
+        return new Review(review.getReviewId(), review.getMovieInfoId(), review.getComment(), review.getRating());
+    }
+}
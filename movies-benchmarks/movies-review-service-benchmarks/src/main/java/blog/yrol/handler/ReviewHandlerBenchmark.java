@@ -0,0 +1,58 @@
+package blog.yrol.handler;
+
+import blog.yrol.domain.Review;
+import blog.yrol.exception.ReviewDataException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.Validation;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of a review on POST / PUT (ReviewHandler.validate), valid and with all of its constraints violated
+ * An invalid review also joins the sorted violation messages and throws ReviewDataException (stack trace included).
+ * In the handler package, since validate is package-private.
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReviewHandlerBenchmark {
+
+    private ReviewHandler reviewHandler;
+    private Review validReview;
+    private Review invalidReview;
+
+    @Setup
+    public void setUp() {
+        reviewHandler = new ReviewHandler(null, null, Validation.buildDefaultValidatorFactory().getValidator());
+        validReview = new Review(null, 1L, "Awesome movie", 9.0);
+        invalidReview = new Review(null, null, "Awesome movie", -9.0);
+    }
+
+    @Benchmark
+    public Review validateValidReview() {
+        reviewHandler.validate(validReview);
+        return validReview;
+    }
+
+    @Benchmark
+    public String validateInvalidReview() {
+        try {
+            reviewHandler.validate(invalidReview);
+            return null;
+        } catch (ReviewDataException ex) {
+            return ex.getMessage();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.MovieServiceApplication;
+import blog.yrol.domain.Movie;
+import blog.yrol.domain.MovieInfo;
+import blog.yrol.domain.Review;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Latency percentiles of GET /v1/movies/{id} with the movie info & reviews lookups zipped (parallel) or chained (sequential)
+ * The movies service is started in the benchmark JVM and called through a WebClient, its movie info and reviews clients calling
+ * WireMock stubs (as in MoviesControllerIntegrationTest) which answer after the downstream delay, hence the whole HTTP & codec path is measured.
+ * With a downstream delay, the sequential aggregation is expected to take about twice the delay and the parallel one about the delay.
+ * The movie info cache and the hedged reviews lookups are switched off, so that every request waits for both lookups.
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationBenchmark {
+
+    @Param({"parallel", "sequential"})
+    private String aggregationMode;
+
+    @Param({"10", "100"})
+    private int reviewCount;
+
+    @Param({"0", "20"})
+    private int downstreamDelayMillis;
+
+    private WireMockServer wireMockServer;
+    private ConfigurableApplicationContext context;
+    private WebClient webClient;
+
+    @Setup
+    public void setUp() throws Exception {
+        var objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        var movieInfo = new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        var reviews = IntStream.range(0, reviewCount)
+                .mapToObj(i -> new Review(String.valueOf(i), 1L, "Awesome Movie " + i, (double) (i % 10)))
+                .collect(Collectors.toList());
+
+        wireMockServer = new WireMockServer(options().dynamicPort());
+        wireMockServer.start();
+
+        wireMockServer.stubFor(get(urlEqualTo("/v1/moviesinfo/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withFixedDelay(downstreamDelayMillis)
+                        .withBody(objectMapper.writeValueAsString(movieInfo))));
+
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withFixedDelay(downstreamDelayMillis)
+                        .withBody(objectMapper.writeValueAsString(reviews))));
+
+        // As arguments, since the default properties of the builder are overridden by the ones of the service (ex: server.port of the dev profile)
+        context = new SpringApplicationBuilder(MovieServiceApplication.class)
+                .run("--server.port=0", "--spring.main.banner-mode=off", "--logging.level.root=warn",
+                        "--rest.client.moviesInfoUrl=" + wireMockServer.baseUrl() + "/v1/moviesinfo",
+                        "--rest.client.reviewsUrl=" + wireMockServer.baseUrl() + "/v1/reviews",
+                        "--movies.aggregation.mode=" + aggregationMode,
+                        "--movies.cache.movie-info.enabled=false",
+                        "--rest.client.reviews.hedge.enabled=false");
+
+        webClient = WebClient.builder()
+                .baseUrl(String.format("http://localhost:%s/v1/movies", context.getEnvironment().getProperty("local.server.port")))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        wireMockServer.stop();
+    }
+
+    @Benchmark
+    public Movie retrieveMovieById() {
+        return webClient.get()
+                .uri("/{id}", "1")
+                .retrieve()
+                .bodyToMono(Movie.class)
+                .block();
+    }
+}
@@ -0,0 +1,118 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.config.WebClientConfig;
+import blog.yrol.domain.Movie;
+import blog.yrol.domain.MovieInfo;
+import blog.yrol.domain.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP/1.1 (pooled) against h2c (cleartext HTTP/2) for the inter-service calls, each operation being a burst of 1k concurrent movie aggregations
+ * (movie info & reviews zipped, as MoviesController does). The downstream services are simulated by an in-process Reactor Netty server
+ * accepting both protocols and answering after a fixed delay. Both clients are built by WebClientConfig.httpClient with the same bounded
+ * connection pool, hence HTTP/1.1 queues for the connections while h2c multiplexes the calls over them.
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpProtocolBenchmark {
+
+    private static final int CONCURRENT_AGGREGATIONS = 1000;
+    private static final int MAX_CONNECTIONS = 50;
+    private static final Duration DOWNSTREAM_DELAY = Duration.ofMillis(20);
+
+    private static final String MOVIE_INFO_JSON = "{\"movieInfoId\":\"1\",\"name\":\"Batman Begins\",\"year\":2005,\"cast\":[\"Christian Bale\",\"Michael Cane\"],\"release_date\":\"2005-06-15\"}";
+    private static final String REVIEWS_JSON = "[{\"reviewId\":\"1\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0},{\"reviewId\":\"2\",\"movieInfoId\":1,\"comment\":\"Excellent Movie\",\"rating\":8.0}]";
+
+    @Param({"http11", "h2c"})
+    private String protocol;
+
+    private DisposableServer server;
+    private ConnectionProvider connectionProvider;
+    private WebClient webClient;
+
+    @Setup
+    public void setUp() {
+        server = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+                .route(routes -> routes
+                        .get("/v1/moviesinfo/{id}", (request, response) -> response
+                                .header("Content-Type", "application/json")
+                                .sendString(Mono.delay(DOWNSTREAM_DELAY).thenReturn(MOVIE_INFO_JSON)))
+                        .get("/v1/reviews", (request, response) -> response
+                                .header("Content-Type", "application/json")
+                                .sendString(Mono.delay(DOWNSTREAM_DELAY).thenReturn(REVIEWS_JSON))))
+                .bindNow();
+
+        connectionProvider = ConnectionProvider.builder(protocol)
+                .maxConnections(MAX_CONNECTIONS)
+                .pendingAcquireMaxCount(CONCURRENT_AGGREGATIONS * 2)
+                .pendingAcquireTimeout(Duration.ofSeconds(30))
+                .build();
+
+        var httpClient = WebClientConfig.httpClient(connectionProvider, "h2c".equals(protocol), Duration.ofSeconds(2));
+        var objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        webClient = WebClient.builder()
+                .baseUrl(String.format("http://localhost:%s/v1", server.port()))
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(configurer -> configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper)))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        connectionProvider.disposeLater().block();
+        server.disposeNow();
+    }
+
+    @Benchmark
+    public Movie aggregateConcurrently() {
+        return Flux.range(0, CONCURRENT_AGGREGATIONS)
+                .flatMap(i -> aggregate(), CONCURRENT_AGGREGATIONS)
+                .blockLast();
+    }
+
+    private Mono<Movie> aggregate() {
+        var movieInfoMono = webClient.get()
+                .uri("/moviesinfo/{id}", "1")
+                .retrieve()
+                .bodyToMono(MovieInfo.class);
+
+        var reviewsMono = webClient.get()
+                .uri("/reviews?movieInfoId={id}", "1")
+                .retrieve()
+                .bodyToFlux(Review.class)
+                .collectList();
+
+        return Mono.zip(movieInfoMono, reviewsMono, Movie::new);
+    }
+}
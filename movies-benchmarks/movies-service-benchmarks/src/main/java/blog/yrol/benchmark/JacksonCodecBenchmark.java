@@ -0,0 +1,115 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.domain.Movie;
+import blog.yrol.domain.MovieInfo;
+import blog.yrol.domain.Review;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Jackson encode / decode of the movie info, the reviews (list of 50) and the movie (movie info with its reviews), in JSON and Smile
+ * The mapper is built the same way as the one of the WebFlux codecs (Jackson2ObjectMapperBuilder).
+ * The movie info and the reviews are the movies-service copies, exchanged in the same format as the ones of the movies info and reviews services.
+ * The encoded payload sizes of each format are logged on setup.
+ * **/
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JacksonCodecBenchmark {
+
+    private static final int REVIEWS = 50;
+
+    @Param({"json", "smile"})
+    private String format;
+
+    private MovieInfo movieInfo;
+    private List<Review> reviews;
+    private Movie movie;
+
+    private ObjectWriter writer;
+    private ObjectReader movieInfoReader;
+    private ObjectReader reviewsReader;
+    private ObjectReader movieReader;
+
+    private byte[] movieInfoBytes;
+    private byte[] reviewsBytes;
+    private byte[] movieBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper mapper = "smile".equals(format) ? Jackson2ObjectMapperBuilder.smile().build() : Jackson2ObjectMapperBuilder.json().build();
+
+        movieInfo = new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        reviews = IntStream.range(0, REVIEWS)
+                .mapToObj(i -> new Review(String.valueOf(i), 1L, "Awesome Movie " + i, (double) (i % 10)))
+                .collect(Collectors.toList());
+        movie = new Movie(movieInfo, reviews);
+
+        writer = mapper.writer();
+        movieInfoReader = mapper.readerFor(MovieInfo.class);
+        reviewsReader = mapper.readerFor(new TypeReference<List<Review>>() {});
+        movieReader = mapper.readerFor(Movie.class);
+
+        movieInfoBytes = writer.writeValueAsBytes(movieInfo);
+        reviewsBytes = writer.writeValueAsBytes(reviews);
+        movieBytes = writer.writeValueAsBytes(movie);
+
+        log.info("{} payload sizes - movie info: {} bytes, reviews ({}): {} bytes, movie: {} bytes",
+                format, movieInfoBytes.length, REVIEWS, reviewsBytes.length, movieBytes.length);
+    }
+
+    @Benchmark
+    public byte[] encodeMovieInfo() throws Exception {
+        return writer.writeValueAsBytes(movieInfo);
+    }
+
+    @Benchmark
+    public MovieInfo decodeMovieInfo() throws Exception {
+        return movieInfoReader.readValue(movieInfoBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeReviews() throws Exception {
+        return writer.writeValueAsBytes(reviews);
+    }
+
+    @Benchmark
+    public List<Review> decodeReviews() throws Exception {
+        return reviewsReader.readValue(reviewsBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeMovie() throws Exception {
+        return writer.writeValueAsBytes(movie);
+    }
+
+    @Benchmark
+    public Movie decodeMovie() throws Exception {
+        return movieReader.readValue(movieBytes);
+    }
+}
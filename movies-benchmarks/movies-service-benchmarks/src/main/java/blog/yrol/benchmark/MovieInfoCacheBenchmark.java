@@ -0,0 +1,97 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.cache.MovieInfoCache;
+import blog.yrol.domain.MovieInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Movie info lookups through the MovieInfoCache, with the cache disabled and enabled, against a loader standing in for the moviesInfo service
+ * The same skewed (popular movies requested more often) sequence of movie IDs is replayed in both cases, the loader calls being reported
+ * next to the lookups as movieInfoRequests (downstream requests per ms), hence the drop in the moviesInfo service request rate.
+ * Catalogs larger than the cache (max-size) show the misses of the movies evicted in between, ex: -p movies=1000000
+ * **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovieInfoCacheBenchmark {
+
+    // Power of 2, so that the next ID is picked with a mask
+    private static final int MOVIE_IDS = 1 << 16;
+    private static final long MAX_SIZE = 10_000;
+
+    @Param({"false", "true"})
+    private boolean cacheEnabled;
+
+    @Param({"1000", "100000"})
+    private int movies;
+
+    private MovieInfoCache movieInfoCache;
+    private String[] movieIds;
+
+    @Setup
+    public void setUp() {
+        movieInfoCache = new MovieInfoCache(cacheEnabled, MAX_SIZE, Duration.ofMinutes(5), new SimpleMeterRegistry());
+
+        var random = new Random(42);
+        movieIds = new String[MOVIE_IDS];
+        for (int i = 0; i < MOVIE_IDS; i++) {
+            // squaring the random value skews the requests towards the first (popular) movies
+            movieIds[i] = "movie-" + (int) (Math.pow(random.nextDouble(), 2) * movies);
+        }
+    }
+
+    /**
+     * Calls of the loader (the moviesInfo service requests), reported per ms next to the lookups
+     * **/
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Downstream {
+
+        public long movieInfoRequests;
+
+        private int next;
+
+        private final MovieInfo movieInfo = new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+
+        private final Function<String, Mono<MovieInfo>> loader = movieId -> {
+            movieInfoRequests++;
+            return Mono.just(movieInfo);
+        };
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            movieInfoRequests = 0;
+        }
+    }
+
+    @Benchmark
+    public MovieInfo retrieveMovieInfo(Downstream downstream) {
+        var movieId = movieIds[downstream.next++ & (MOVIE_IDS - 1)];
+
+        return movieInfoCache.get(movieId, downstream.loader).block();
+    }
+}
@@ -0,0 +1,80 @@
+package blog.yrol.benchmark;
+
+import blog.yrol.domain.Review;
+import blog.yrol.util.Hedger;
+import blog.yrol.util.LatencyTracker;
+import blog.yrol.util.RequestBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency percentiles of the reviews lookups with and without hedging (Hedger, with the defaults of application.properties)
+ * The reviews service is simulated by a log-normal random delay (median 20 ms), which gives the occasional slow responses (long tail).
+ * The hedge delay is the p95 of the recent latencies, hence the p99 is expected to drop close to the p95 plus the median.
+ * The hedges sent & skipped (exhausted budget) are logged once the benchmark is done.
+ * **/
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReviewsHedgingBenchmark {
+
+    private static final double REVIEWS_MEDIAN_DELAY_MS = 20;
+    private static final double REVIEWS_DELAY_SIGMA = 0.8;
+
+    @Param({"false", "true"})
+    private boolean hedging;
+
+    private MeterRegistry meterRegistry;
+    private Hedger hedger;
+
+    private final List<Review> reviews = List.of(new Review("1", 1L, "Awesome Movie", 9.0), new Review("2", 1L, "Excellent Movie", 8.0));
+
+    @Setup
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        hedger = new Hedger("reviews", hedging, Duration.ofMillis(20), Duration.ofMillis(200),
+                new LatencyTracker(1024, 95, 64), new RequestBudget(0.1, 10), meterRegistry);
+    }
+
+    @TearDown
+    public void tearDown() {
+        log.info("hedging {} - hedges sent: {}, budget exhausted: {}", hedging,
+                (long) meterRegistry.get("movies.client.hedge.requests").counter().count(),
+                (long) meterRegistry.get("movies.client.hedge.budget.exhausted").counter().count());
+    }
+
+    @Benchmark
+    public List<Review> retrieveReviews() {
+        return hedger.hedge(this::reviewsLookup).block();
+    }
+
+    // Each attempt (original or hedge) draws its own delay, as two calls of the reviews service would
+    private Mono<List<Review>> reviewsLookup() {
+        var delayMillis = REVIEWS_MEDIAN_DELAY_MS * Math.exp(REVIEWS_DELAY_SIGMA * ThreadLocalRandom.current().nextGaussian());
+
+        return Mono.delay(Duration.ofNanos((long) (delayMillis * 1_000_000))).thenReturn(reviews);
+    }
+}
@@ -0,0 +1,192 @@
+package blog.yrol.catalog;
+
+import lombok.Getter;
+import org.bson.types.ObjectId;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic catalog of movies & reviews - the same seed and sizes always give the same catalog
+ * Each movie / review is derived from the seed and its own index only, hence any one of them can be regenerated on its own (ex: movie(id) to pick
+ * the name of an existing movie to look up) and the catalog can be streamed at any size without being held in memory.
+ * Distributions:
+ * Reviews per movie - Zipfian (exponent 1) over the popularity of the movies, the popularity ranks being shuffled over the IDs (a few blockbusters, a long tail)
+ * Cast - 2 to 6 actors per movie, drawn (Zipfian) from an actor pool shared by all the movies (1 actor per 4 movies), hence the popular actors star in many movies
+ * Year - skewed towards the recent years (exponential, mean 15 years before LATEST_YEAR), names - built from a small vocabulary, hence not unique
+ * Rating - around a quality of the movie (3 - 9), rounded to the half, missing for 5% of the reviews
+ * **/
+public class CatalogGenerator {
+
+    public static final int LATEST_YEAR = 2024;
+    private static final int EARLIEST_YEAR = 1920;
+
+    private static final double POPULARITY_EXPONENT = 1.0;
+    private static final int MOVIES_PER_ACTOR = 4;
+    private static final int MIN_CAST = 2;
+    private static final int MAX_CAST = 6;
+    private static final double UNRATED_REVIEWS = 0.05;
+
+    // ObjectIds of the reviews - one second apart from 2020-01-01 (timestamp part), followed by the seed
+    private static final int FIRST_REVIEW_SECONDS = 1_577_836_800;
+
+    // Independent random streams per kind of value, ex: the rating of a review doesn't depend on how its movie was drawn
+    private static final long MOVIE_STREAM = 1;
+    private static final long REVIEW_STREAM = 2;
+    private static final long QUALITY_STREAM = 3;
+    private static final long POPULARITY_STREAM = 4;
+
+    private static final String[] TITLE_ADJECTIVES = {"Silent", "Dark", "Last", "Golden", "Broken", "Hidden", "Burning", "Frozen", "Lost", "Eternal",
+            "Crimson", "Midnight", "Wild", "Savage", "Distant", "Forgotten", "Electric", "Hollow", "Iron", "Secret"};
+    private static final String[] TITLE_NOUNS = {"River", "Horizon", "Knight", "Empire", "Garden", "Storm", "Kingdom", "Shadow", "Road", "Ocean",
+            "City", "Promise", "Frontier", "Mirror", "Heart", "Island", "Voyage", "Legacy", "Signal", "Harvest"};
+    private static final String[] FIRST_NAMES = {"James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+            "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Taylor", "Moore", "Jackson", "Martin", "Lee"};
+    private static final String[] COMMENTS = {"Awesome Movie", "Excellent Movie", "Great cast", "A bit too long", "Loved the soundtrack",
+            "Not my cup of tea", "Would watch again", "Overrated", "Underrated gem", "Disappointing ending"};
+
+    @Getter
+    private final long seed;
+
+    @Getter
+    private final int movies;
+
+    @Getter
+    private final int reviewsPerMovie;
+
+    @Getter
+    private final int actors;
+
+    // Popularity of the movies (reviews), ex: for looking up the movies as often as they are reviewed
+    @Getter
+    private final ZipfDistribution moviePopularity;
+
+    private final ZipfDistribution actorPopularity;
+
+    // Movie ID (1 - movies) of each popularity rank (index 0 - the most popular movie)
+    private final int[] movieIdsByPopularity;
+
+    public CatalogGenerator(long seed, int movies, int reviewsPerMovie) {
+        this.seed = seed;
+        this.movies = movies;
+        this.reviewsPerMovie = reviewsPerMovie;
+        this.actors = Math.max(MAX_CAST, movies / MOVIES_PER_ACTOR);
+        this.moviePopularity = new ZipfDistribution(movies, POPULARITY_EXPONENT);
+        this.actorPopularity = new ZipfDistribution(actors, POPULARITY_EXPONENT);
+        this.movieIdsByPopularity = shuffledMovieIds();
+    }
+
+    public long getReviews() {
+        return (long) movies * reviewsPerMovie;
+    }
+
+    public Flux<GeneratedMovie> movies() {
+        return Flux.range(1, movies).map(this::movie);
+    }
+
+    public Flux<GeneratedReview> reviews() {
+        return Flux.range(0, Math.toIntExact(getReviews())).map(this::review);
+    }
+
+    /**
+     * Movie of the given ID (1 - movies)
+     * **/
+    public GeneratedMovie movie(int movieInfoId) {
+        var random = random(MOVIE_STREAM, movieInfoId);
+
+        var name = String.format("The %s %s", TITLE_ADJECTIVES[random.nextInt(TITLE_ADJECTIVES.length)], TITLE_NOUNS[random.nextInt(TITLE_NOUNS.length)]);
+        if (random.nextInt(4) == 0) {
+            // Sequels
+            name += " " + (2 + random.nextInt(4));
+        }
+
+        var year = Math.max(EARLIEST_YEAR, LATEST_YEAR - (int) (-Math.log(1 - random.nextDouble()) * 15));
+
+        var castSize = MIN_CAST + random.nextInt(MAX_CAST - MIN_CAST + 1);
+        var cast = new LinkedHashSet<String>();
+        while (cast.size() < castSize) {
+            cast.add(actor(actorPopularity.sample(random.nextDouble())));
+        }
+
+        var releaseDate = LocalDate.ofYearDay(year, 1 + random.nextInt(365));
+
+        return new GeneratedMovie(String.valueOf(movieInfoId), name, year, new ArrayList<>(cast), releaseDate);
+    }
+
+    /**
+     * Review of the given index (0 - reviews - 1), of a movie drawn by popularity
+     * **/
+    public GeneratedReview review(int index) {
+        var random = random(REVIEW_STREAM, index);
+
+        var movieInfoId = movieIdOfRank(moviePopularity.sample(random.nextDouble()));
+        var comment = COMMENTS[random.nextInt(COMMENTS.length)];
+
+        Double rating = null;
+        if (random.nextDouble() >= UNRATED_REVIEWS) {
+            // Roughly normal noise (sum of uniforms) around the quality of the movie
+            var noise = (random.nextDouble() + random.nextDouble() + random.nextDouble() - 1.5) * 2;
+            rating = Math.round(Math.min(10, Math.max(0, quality(movieInfoId) + noise)) * 2) / 2.0;
+        }
+
+        return new GeneratedReview(reviewId(index), (long) movieInfoId, comment, rating);
+    }
+
+    /**
+     * Movie ID of the given popularity rank (1 - the movie with the most reviews), ex: movieIdOfRank(moviePopularity.sample(random.nextDouble()))
+     * to look up the movies as often as they are reviewed
+     * **/
+    public int movieIdOfRank(int rank) {
+        return movieIdsByPopularity[rank - 1];
+    }
+
+    /**
+     * Actor of the given popularity rank (1 - actors), ex: "James Smith", "James Smith 2" once the first & last names are exhausted
+     * **/
+    public String actor(int rank) {
+        var index = rank - 1;
+        var name = FIRST_NAMES[index % FIRST_NAMES.length] + " " + LAST_NAMES[(index / FIRST_NAMES.length) % LAST_NAMES.length];
+        var homonym = index / (FIRST_NAMES.length * LAST_NAMES.length);
+
+        return homonym == 0 ? name : name + " " + (homonym + 1);
+    }
+
+    private double quality(int movieInfoId) {
+        return 3 + 6 * random(QUALITY_STREAM, movieInfoId).nextDouble();
+    }
+
+    private String reviewId(int index) {
+        return new ObjectId(ByteBuffer.allocate(12)
+                .putInt(FIRST_REVIEW_SECONDS + index)
+                .putLong(seed)
+                .array()).toHexString();
+    }
+
+    // Fisher-Yates shuffle of the IDs, hence the most reviewed movies are spread over the IDs
+    private int[] shuffledMovieIds() {
+        var random = random(POPULARITY_STREAM, 0);
+        var ids = new int[movies];
+        for (int i = 0; i < movies; i++) {
+            ids[i] = i + 1;
+        }
+
+        for (int i = movies - 1; i > 0; i--) {
+            var j = random.nextInt(i + 1);
+            var id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+
+        return ids;
+    }
+
+    private SplittableRandom random(long stream, long index) {
+        return new SplittableRandom(seed ^ (stream << 56) ^ (index * 0x9E3779B97F4A7C15L));
+    }
+}
@@ -0,0 +1,55 @@
+package blog.yrol.catalog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Bulk loading of the synthetic catalog, mapped to the domain classes of the microservice, with the mapping of the microservice (ReactiveMongoTemplate)
+ * The documents are inserted in batches (one insertMany per batch), a few batches at a time.
+ * The indexes declared on the domain classes (ex: @CompoundIndex) are built once loaded, which is faster than maintaining them along the inserts.
+ * **/
+@Slf4j
+public class CatalogLoader {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final int CONCURRENT_BATCHES = 4;
+
+    private final ReactiveMongoTemplate template;
+
+    public CatalogLoader(ReactiveMongoTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Replacing the documents of the domain class with the given ones, returning the number of documents loaded
+     * ex: loader.load(generator.movies(), movie -> new MovieInfo(movie.getMovieInfoId(), ...), MovieInfo.class)
+     * **/
+    public <S, T> Mono<Long> load(Flux<S> generated, Function<S, T> mapper, Class<T> entityClass) {
+        var start = System.nanoTime();
+
+        return template.dropCollection(entityClass)
+                .thenMany(generated
+                        .map(mapper)
+                        .buffer(BATCH_SIZE)
+                        .flatMap(batch -> template.insert(batch, entityClass).count(), CONCURRENT_BATCHES))
+                .reduce(0L, Long::sum)
+                .flatMap(count -> ensureIndexes(entityClass).thenReturn(count))
+                .doOnNext(count -> log.info("Loaded {} {} documents in {} ms", count, entityClass.getSimpleName(), (System.nanoTime() - start) / 1_000_000));
+    }
+
+    /**
+     * Creating the indexes declared on the domain class, as the microservice does at startup (spring.data.mongodb.auto-index-creation)
+     * **/
+    public Mono<Void> ensureIndexes(Class<?> entityClass) {
+        var indexResolver = IndexResolver.create(template.getConverter().getMappingContext());
+
+        return Flux.fromIterable(indexResolver.resolveIndexFor(entityClass))
+                .concatMap(index -> template.indexOps(entityClass).ensureIndex(index))
+                .then();
+    }
+}
@@ -0,0 +1,50 @@
+package blog.yrol.catalog;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Versions;
+import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Mongo DB started on a free port of the local host (downloaded on first use), for the catalog to be loaded into
+ * Closing it stops the Mongo DB, along with its data.
+ * **/
+public class EmbeddedMongo implements Closeable {
+
+    // Same version as the integration tests of the microservices
+    public static final String DEFAULT_VERSION = "3.5.5";
+
+    private final MongodExecutable mongod;
+    private final int port;
+
+    private EmbeddedMongo(MongodExecutable mongod, int port) {
+        this.mongod = mongod;
+        this.port = port;
+    }
+
+    public static EmbeddedMongo start(String version) throws IOException {
+        var port = Network.freeServerPort(Network.getLocalHost());
+        var mongod = MongodStarter.getDefaultInstance().prepare(MongodConfig.builder()
+                .version(Versions.withFeatures(Version.of(version)))
+                .net(new Net("localhost", port, Network.localhostIsIPv6()))
+                .build());
+        mongod.start();
+
+        return new EmbeddedMongo(mongod, port);
+    }
+
+    public String getConnectionString() {
+        return String.format("mongodb://localhost:%s", port);
+    }
+
+    @Override
+    public void close() {
+        mongod.stop();
+    }
+}
@@ -0,0 +1,22 @@
+package blog.yrol.catalog;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Movie of the synthetic catalog (see CatalogGenerator), mapped to the domain class of the microservice by the caller
+ * The ID is numeric, since the reviews refer to the movies by a numeric movieInfoId.
+ * **/
+@Getter
+@AllArgsConstructor
+public class GeneratedMovie {
+
+    private final String movieInfoId;
+    private final String name;
+    private final Integer year;
+    private final List<String> cast;
+    private final LocalDate releaseDate;
+}
@@ -0,0 +1,19 @@
+package blog.yrol.catalog;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Review of the synthetic catalog (see CatalogGenerator), mapped to the domain class of the microservice by the caller
+ * The ID is an ObjectId (hex) in the order of generation, hence the most recent reviews are the last generated ones.
+ * The rating is null for the reviews left without a rating.
+ * **/
+@Getter
+@AllArgsConstructor
+public class GeneratedReview {
+
+    private final String reviewId;
+    private final Long movieInfoId;
+    private final String comment;
+    private final Double rating;
+}
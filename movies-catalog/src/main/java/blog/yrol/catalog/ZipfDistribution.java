@@ -0,0 +1,54 @@
+package blog.yrol.catalog;
+
+import java.util.Arrays;
+
+/**
+ * Zipf distribution over the ranks 1 - size, the probability of rank k being proportional to 1 / k^exponent
+ * ex: with the exponent 1, the most popular movie gets twice the reviews of the second one and ten times the reviews of the tenth one.
+ * Sampled by inverting the cumulative distribution (binary search), from a uniform value given by the caller.
+ * **/
+public class ZipfDistribution {
+
+    private final double[] cumulative;
+
+    public ZipfDistribution(int size, double exponent) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size : must be greater than 0");
+        }
+
+        cumulative = new double[size];
+
+        var total = 0.0;
+        for (int rank = 1; rank <= size; rank++) {
+            total += 1.0 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = total;
+        }
+
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+
+    /**
+     * Probability of the given rank
+     * **/
+    public double probability(int rank) {
+        return rank == 1 ? cumulative[0] : cumulative[rank - 1] - cumulative[rank - 2];
+    }
+
+    /**
+     * Rank (1 - size) of the given uniform value (0 inclusive - 1 exclusive), ex: sample(random.nextDouble())
+     * **/
+    public int sample(double uniform) {
+        var index = Arrays.binarySearch(cumulative, uniform);
+
+        // Not found - the insertion point (first cumulative probability greater than the value)
+        var rank = (index >= 0 ? index + 1 : -index - 1) + 1;
+
+        return Math.min(rank, cumulative.length);
+    }
+}
@@ -0,0 +1,108 @@
+package blog.yrol.unit;
+
+import blog.yrol.catalog.CatalogGenerator;
+import blog.yrol.catalog.GeneratedMovie;
+import blog.yrol.catalog.GeneratedReview;
+import blog.yrol.catalog.ZipfDistribution;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CatalogGeneratorTest {
+
+    @Test
+    void testGenerate_whenSameSeed_generateSameCatalog() {
+
+        // Arrange
+        var first = new CatalogGenerator(42, 1000, 10);
+        var second = new CatalogGenerator(42, 1000, 10);
+        var other = new CatalogGenerator(43, 1000, 10);
+
+        // Act
+        var firstMovies = first.movies().map(this::describe).collectList().block();
+        var firstReviews = first.reviews().map(this::describe).collectList().block();
+
+        // Assert
+        assertEquals(1000, firstMovies.size());
+        assertEquals(10_000, firstReviews.size());
+        assertEquals(firstMovies, second.movies().map(this::describe).collectList().block());
+        assertEquals(firstReviews, second.reviews().map(this::describe).collectList().block());
+        assertNotEquals(firstReviews, other.reviews().map(this::describe).collectList().block());
+
+        // Any movie / review regenerated on its own
+        assertEquals(firstMovies.get(499), describe(first.movie(500)));
+        assertEquals(firstReviews.get(4999), describe(first.review(4999)));
+    }
+
+    @Test
+    void testGenerate_whenReviewsGenerated_followMoviePopularity() {
+
+        // Arrange
+        var generator = new CatalogGenerator(42, 1000, 50);
+
+        // Act
+        var reviewsPerMovie = new HashMap<Long, Long>();
+        generator.reviews().toIterable().forEach(review -> reviewsPerMovie.merge(review.getMovieInfoId(), 1L, Long::sum));
+
+        // Assert - roughly the expected share of the reviews for the most popular movies, a long tail for the others
+        var popularity = generator.getMoviePopularity();
+        for (int rank = 1; rank <= 3; rank++) {
+            var expected = popularity.probability(rank) * generator.getReviews();
+            var actual = reviewsPerMovie.get((long) generator.movieIdOfRank(rank));
+            assertEquals(expected, actual, expected * 0.1);
+        }
+
+        assertTrue(reviewsPerMovie.getOrDefault((long) generator.movieIdOfRank(1000), 0L) < generator.getReviewsPerMovie());
+        assertTrue(reviewsPerMovie.keySet().stream().allMatch(id -> id >= 1 && id <= 1000));
+    }
+
+    @Test
+    void testGenerate_whenMoviesGenerated_castDrawnFromSharedPool() {
+
+        // Arrange
+        var generator = new CatalogGenerator(42, 1000, 10);
+
+        // Act
+        var movies = generator.movies().collectList().block();
+        var castings = movies.stream()
+                .flatMap(movie -> movie.getCast().stream())
+                .collect(Collectors.groupingBy(actor -> actor, Collectors.counting()));
+
+        // Assert
+        assertTrue(movies.stream().allMatch(movie -> movie.getCast().size() >= 2 && movie.getCast().size() <= 6
+                && new HashSet<>(movie.getCast()).size() == movie.getCast().size()));
+        assertTrue(castings.size() <= generator.getActors());
+        assertTrue(castings.get(generator.actor(1)) > castings.getOrDefault(generator.actor(generator.getActors()), 0L));
+        assertTrue(movies.stream().allMatch(movie -> movie.getYear() <= CatalogGenerator.LATEST_YEAR && movie.getReleaseDate().getYear() == movie.getYear()));
+    }
+
+    @Test
+    void testSample_whenUniformValuesGiven_returnRanksOfTheirCumulativeProbability() {
+
+        // Arrange
+        var zipf = new ZipfDistribution(4, 1.0);
+
+        // Act & Assert - probabilities 12/25, 6/25, 4/25, 3/25
+        assertEquals(12 / 25.0, zipf.probability(1), 1e-9);
+        assertEquals(3 / 25.0, zipf.probability(4), 1e-9);
+        assertEquals(1, zipf.sample(0.0));
+        assertEquals(1, zipf.sample(0.47));
+        assertEquals(2, zipf.sample(0.49));
+        assertEquals(3, zipf.sample(0.8));
+        assertEquals(4, zipf.sample(0.99));
+    }
+
+    private String describe(GeneratedMovie movie) {
+        return String.join("|", movie.getMovieInfoId(), movie.getName(), String.valueOf(movie.getYear()), String.valueOf(movie.getCast()), String.valueOf(movie.getReleaseDate()));
+    }
+
+    private String describe(GeneratedReview review) {
+        return String.join("|", review.getReviewId(), String.valueOf(review.getMovieInfoId()), review.getComment(), String.valueOf(review.getRating()));
+    }
+}
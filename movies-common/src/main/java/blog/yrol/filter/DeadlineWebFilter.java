@@ -0,0 +1,64 @@
+package blog.yrol.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Enforcing the deadline of the caller (ex: movies-service), sent as the remaining time in the X-Request-Timeout-Ms header
+ * Requests arriving with no time left are rejected with 504 without touching Mongo.
+ * Otherwise, the request is cancelled once the remaining time elapses - which also cancels its Mongo query, since the caller has already given up on the response.
+ * Switched off with deadline.web-filter.enabled=false, ex: movies-service, which sets the deadline of its requests itself (movies.request.timeout).
+ * **/
+@Component
+@ConditionalOnProperty(name = "deadline.web-filter.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class DeadlineWebFilter implements WebFilter {
+
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var header = exchange.getRequest().getHeaders().getFirst(HEADER);
+        if (header == null) {
+            return chain.filter(exchange);
+        }
+
+        long timeoutMs;
+        try {
+            timeoutMs = Long.parseLong(header.trim());
+        } catch (NumberFormatException ex) {
+            log.warn("Ignoring invalid {} header: {}", HEADER, header);
+            return chain.filter(exchange);
+        }
+
+        if (timeoutMs <= 0) {
+            return deadlineExceeded(exchange);
+        }
+
+        return chain.filter(exchange)
+                .timeout(Duration.ofMillis(timeoutMs))
+                .onErrorResume(TimeoutException.class, ex -> deadlineExceeded(exchange));
+    }
+
+    private Mono<Void> deadlineExceeded(ServerWebExchange exchange) {
+        log.warn("Request deadline exceeded: {}", exchange.getRequest().getURI());
+
+        var response = exchange.getResponse();
+        if (response.isCommitted()) {
+            // Part of the body has already been written, hence only closing the response
+            return Mono.error(new IllegalStateException("Request deadline exceeded"));
+        }
+
+        response.setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+        return response.setComplete();
+    }
+}
@@ -0,0 +1,124 @@
+package blog.yrol.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tracing the reactive signals (onSubscribe, request, onNext, onError, onComplete, cancel) of a sampled fraction of the calls,
+ * and of every call for the given IDs (ex: a movie ID, a review ID) - in place of .log(), which writes each signal of each call synchronously.
+ * The traces are written by the "blog.yrol.trace" logger, sent to a non-blocking appender (see logback-spring.xml).
+ * Whether a call is traced is decided once on subscribe, hence a disabled tracer costs a volatile read per call.
+ * Switched on / off at runtime with the actuator endpoint of each service, ex (movies-service):
+ * curl -X POST http://localhost:8082/actuator/signaltracing -H 'Content-Type: application/json' -d '{"enabled":true,"sampleRate":0.01,"ids":"1,2"}'
+ * **/
+@Component
+@Endpoint(id = "signaltracing")
+public class SignalTracer {
+
+    private static final Logger log = LoggerFactory.getLogger("blog.yrol.trace");
+
+    private volatile Settings settings;
+
+    public SignalTracer(@Value("${signal-tracing.enabled:false}") boolean enabled,
+                        @Value("${signal-tracing.sample-rate:0.01}") double sampleRate,
+                        @Value("${signal-tracing.ids:}") String ids) {
+        this.settings = new Settings(enabled, sampleRate, ids(ids));
+    }
+
+    public <T> Mono<T> trace(String name, @Nullable String id, Mono<T> mono) {
+        return Mono.defer(() -> {
+            if (!sampled(id)) {
+                return mono;
+            }
+
+            return mono
+                    .doOnSubscribe(subscription -> log.info("{}[{}] onSubscribe", name, id))
+                    .doOnRequest(n -> log.info("{}[{}] request({})", name, id, n == Long.MAX_VALUE ? "unbounded" : n))
+                    .doOnEach(signal -> trace(name, id, signal))
+                    .doOnCancel(() -> log.info("{}[{}] cancel()", name, id));
+        });
+    }
+
+    public <T> Flux<T> trace(String name, @Nullable String id, Flux<T> flux) {
+        return Flux.defer(() -> {
+            if (!sampled(id)) {
+                return flux;
+            }
+
+            return flux
+                    .doOnSubscribe(subscription -> log.info("{}[{}] onSubscribe", name, id))
+                    .doOnRequest(n -> log.info("{}[{}] request({})", name, id, n == Long.MAX_VALUE ? "unbounded" : n))
+                    .doOnEach(signal -> trace(name, id, signal))
+                    .doOnCancel(() -> log.info("{}[{}] cancel()", name, id));
+        });
+    }
+
+    @ReadOperation
+    public Settings settings() {
+        return settings;
+    }
+
+    /**
+     * Updating the given settings only, ex: {"enabled":false} keeps the sample rate and the IDs
+     * IDs are comma separated, and an empty string clears them
+     * **/
+    @WriteOperation
+    public Settings configure(@Nullable Boolean enabled, @Nullable Double sampleRate, @Nullable String ids) {
+        var current = settings;
+
+        settings = new Settings(
+                enabled != null ? enabled : current.isEnabled(),
+                sampleRate != null ? sampleRate : current.getSampleRate(),
+                ids != null ? ids(ids) : current.getIds());
+
+        return settings;
+    }
+
+    private boolean sampled(@Nullable String id) {
+        var current = settings;
+
+        if (!current.isEnabled()) {
+            return false;
+        }
+
+        return (id != null && current.getIds().contains(id)) || ThreadLocalRandom.current().nextDouble() < current.getSampleRate();
+    }
+
+    private static void trace(String name, @Nullable String id, Signal<?> signal) {
+        if (signal.isOnNext()) {
+            log.info("{}[{}] onNext({})", name, id, signal.get());
+        } else if (signal.isOnError()) {
+            log.info("{}[{}] onError({})", name, id, signal.getThrowable().toString());
+        } else if (signal.isOnComplete()) {
+            log.info("{}[{}] onComplete()", name, id);
+        }
+    }
+
+    private static Set<String> ids(String ids) {
+        return StringUtils.commaDelimitedListToSet(StringUtils.trimAllWhitespace(ids));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Settings {
+
+        private final boolean enabled;
+        private final double sampleRate;
+        private final Set<String> ids;
+    }
+}
@@ -0,0 +1,102 @@
+package blog.yrol.unit;
+
+import blog.yrol.util.SignalTracer;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SignalTracerTest {
+
+    private final Logger traceLogger = (Logger) LoggerFactory.getLogger("blog.yrol.trace");
+    private final ListAppender<ILoggingEvent> traces = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        traces.start();
+        traceLogger.addAppender(traces);
+    }
+
+    @AfterEach
+    void tearDown() {
+        traceLogger.detachAppender(traces);
+    }
+
+    @Test
+    void testTrace_whenDisabled_traceNothing() {
+
+        // Arrange
+        var signalTracer = new SignalTracer(false, 1.0, "1");
+
+        // Act & Assert
+        StepVerifier.create(signalTracer.trace("retrieveMovieInfo", "1", Mono.just("Batman Begins")))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+
+        assertTrue(traces.list.isEmpty());
+    }
+
+    @Test
+    void testTrace_whenIdIsTraced_traceEverySignalOfThatIdOnly() {
+
+        // Arrange
+        var signalTracer = new SignalTracer(true, 0.0, "1, 2");
+
+        // Act
+        StepVerifier.create(signalTracer.trace("retrieveReviews", "1", Flux.just("Awesome Movie", "Excellent Movie")))
+                .expectNext("Awesome Movie", "Excellent Movie")
+                .verifyComplete();
+
+        StepVerifier.create(signalTracer.trace("retrieveReviews", "3", Flux.just("Awesome Movie")))
+                .expectNext("Awesome Movie")
+                .verifyComplete();
+
+        // Assert
+        assertEquals(List.of(
+                "retrieveReviews[1] onSubscribe",
+                "retrieveReviews[1] request(unbounded)",
+                "retrieveReviews[1] onNext(Awesome Movie)",
+                "retrieveReviews[1] onNext(Excellent Movie)",
+                "retrieveReviews[1] onComplete()"), messages());
+    }
+
+    @Test
+    void testConfigure_whenSwitchedOnAtRuntime_traceSubsequentSubscriptions() {
+
+        // Arrange
+        var signalTracer = new SignalTracer(false, 0.01, "");
+        var movieInfo = signalTracer.trace("retrieveMovieInfo", "1", Mono.just("Batman Begins"));
+
+        StepVerifier.create(movieInfo).expectNext("Batman Begins").verifyComplete();
+        assertTrue(traces.list.isEmpty());
+
+        // Act - only the IDs are given, the sample rate is kept
+        var settings = signalTracer.configure(true, null, "1");
+
+        // Assert
+        assertEquals(0.01, settings.getSampleRate());
+        assertEquals(Set.of("1"), settings.getIds());
+
+        StepVerifier.create(movieInfo).expectNext("Batman Begins").verifyComplete();
+        assertTrue(messages().contains("retrieveMovieInfo[1] onNext(Batman Begins)"));
+    }
+
+    private List<String> messages() {
+        return traces.list.stream()
+                .map(ILoggingEvent::getFormattedMessage)
+                .collect(Collectors.toList());
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.context.annotation.ComponentScan;
 
 @SpringBootApplication
@@ -16,8 +17,14 @@ public class MovieInfoServiceApplication implements CommandLineRunner {
 
     public static final Logger LOG = LoggerFactory.getLogger(MovieInfoServiceApplication.class);
 
+    private static final int STARTUP_STEPS = 4096;
+
     public static void main(String[] args) {
-        SpringApplication.run(MovieInfoServiceApplication.class, args);
+        var application = new SpringApplication(MovieInfoServiceApplication.class);
+
+        // Recording the startup steps (timeline), see StartupConfig & /actuator/startup
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+        application.run(args);
     }
 
     @Override
@@ -0,0 +1,35 @@
+package blog.yrol.config;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Smile (binary JSON) responses for the callers preferring it over JSON, ex: movies-service (Accept: application/x-jackson-smile)
+ * The codecs take the place of the default Smile codecs, so that Smile is written with the same Jackson settings as JSON (ex: dates as ISO strings)
+ * **/
+@Configuration
+public class SmileConfig implements WebFluxConfigurer {
+
+    // Same media types as the default Smile codecs (the codecs would otherwise be registered for the JSON media types)
+    private static final MimeType[] SMILE_MIME_TYPES = {new MimeType("application", "x-jackson-smile"), new MimeType("application", "*+x-jackson-smile")};
+
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    public SmileConfig(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        var objectMapper = objectMapperBuilder.factory(new SmileFactory()).build();
+
+        configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(objectMapper, SMILE_MIME_TYPES));
+        configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(objectMapper, SMILE_MIME_TYPES));
+    }
+}
@@ -0,0 +1,100 @@
+package blog.yrol.config;
+
+import blog.yrol.filter.DeadlineWebFilter;
+import com.mongodb.reactivestreams.client.MongoClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Startup of the service, see the fast-startup profile (application-fast-startup.properties) and the appcds Maven profile
+ * Lazy initialization (spring.main.lazy-initialization) - the beans are created on first use, except the ones serving the first requests
+ * (controllers, error handling & the Mongo client, which connects in the background), hence the first requests don't pay for them.
+ * Startup timeline (startup.timeline.slowest-steps) - the slowest startup steps (ex: bean instantiations) logged once ready, the whole timeline
+ * being available at /actuator/startup (see MovieInfoServiceApplication).
+ * Training run (startup.training-run.enabled) - the service sends itself a first request once ready and exits, ex: for listing the classes
+ * to be archived (AppCDS) at build time. The request (startup.training-run.path) is one the service actually serves, so that the classes of the
+ * request path are listed. Without a Mongo DB (ex: at build time), it ends with 504 at the deadline sent along (startup.training-run.timeout, see DeadlineWebFilter),
+ * having gone through the routing, the handler and the repository up to the query.
+ * **/
+@Configuration
+@Slf4j
+public class StartupConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerlyInitializedBeans() {
+        return (beanName, beanDefinition, beanType) -> AnnotatedElementUtils.hasAnnotation(beanType, Controller.class)
+                || AnnotatedElementUtils.hasAnnotation(beanType, ControllerAdvice.class)
+                || RouterFunction.class.isAssignableFrom(beanType)
+                || MongoClient.class.isAssignableFrom(beanType);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "startup.timeline.slowest-steps")
+    public ApplicationListener<ApplicationReadyEvent> startupTimelineReport(@Value("${startup.timeline.slowest-steps}") int slowestSteps) {
+        return event -> {
+            if (!(event.getApplicationContext().getApplicationStartup() instanceof BufferingApplicationStartup)) {
+                return;
+            }
+
+            var timeline = ((BufferingApplicationStartup) event.getApplicationContext().getApplicationStartup()).getBufferedTimeline();
+            var slowest = timeline.getEvents().stream()
+                    .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                    .limit(slowestSteps)
+                    .map(step -> String.format("%6d ms %s %s", step.getDuration().toMillis(), step.getStartupStep().getName(), tags(step.getStartupStep())))
+                    .collect(Collectors.joining("\n"));
+
+            // Since the JVM start, hence including the JVM startup & the class loading (ex: with or without AppCDS)
+            log.info("Ready in {} ms ({} startup steps), slowest:\n{}", ManagementFactory.getRuntimeMXBean().getUptime(), timeline.getEvents().size(), slowest);
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "startup.training-run.enabled", havingValue = "true")
+    public ApplicationListener<ApplicationReadyEvent> startupTrainingRun(@Value("${startup.training-run.path:/v1/moviesinfo/1}") String path,
+                                                                         @Value("${startup.training-run.timeout:PT5S}") Duration timeout) {
+        return event -> {
+            var port = event.getApplicationContext().getEnvironment().getProperty("local.server.port");
+
+            // Any outcome will do (ex: an error status), the request having loaded the classes on its path
+            var outcome = WebClient.create(String.format("http://localhost:%s", port))
+                    .get()
+                    .uri(path)
+                    .header(DeadlineWebFilter.HEADER, String.valueOf(timeout.toMillis()))
+                    .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode().toString()))
+                    .timeout(timeout.multipliedBy(2))
+                    .onErrorResume(ex -> Mono.just(ex.toString()))
+                    .block();
+
+            log.info("Training run - GET {} : {}, exiting", path, outcome);
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        };
+    }
+
+    private static String tags(StartupStep step) {
+        return StreamSupport.stream(step.getTags().spliterator(), false)
+                .map(tag -> tag.getKey() + "=" + tag.getValue())
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+}
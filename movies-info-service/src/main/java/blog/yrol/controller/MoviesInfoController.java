@@ -1,16 +1,23 @@
 package blog.yrol.controller;
 
 import blog.yrol.domain.MovieInfo;
+import blog.yrol.service.MovieInfoEventPublisher;
 import blog.yrol.service.MovieInfoService;
+import blog.yrol.util.PageCursor;
+import blog.yrol.util.SignalTracer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
 import javax.validation.Valid;
+import java.util.List;
 
 @RestController
 @RequestMapping("/v1")
@@ -18,15 +25,30 @@ public class MoviesInfoController {
 
     private MovieInfoService movieInfoService;
 
+    /**
+     * Publishing the created / updated / deleted movies with a sequence number to the stream endpoints (replaying the recent events to reconnecting subscribers)
+     * **/
+    private MovieInfoEventPublisher movieInfoEventPublisher;
+
+    /**
+     * Tracing the signals of the sampled calls / of the given movie IDs (switched on at runtime, see SignalTracer)
+     * **/
+    private SignalTracer signalTracer;
 
     /**
-     * Creating Sink for the event publisher
-     * latest() - will make sure subscribers get only the latest data, ex: a newly joined subscriber will not see the history
+     * Listing all the movies in one go (without limit) holds a Mongo cursor for as long as the whole collection takes to be written,
+     * hence it can be disabled in favour of the paged listing (getMoviesInfoPage)
      * **/
-    Sinks.Many<MovieInfo> moviesInfoSink = Sinks.many().replay().latest();
+    @Value("${moviesinfo.listing.unbounded.enabled:true}")
+    private boolean unboundedListingEnabled;
+
+    @Value("${moviesinfo.page.max-size:1000}")
+    private int maxPageSize;
 
-    public MoviesInfoController(MovieInfoService movieInfoService) {
+    public MoviesInfoController(MovieInfoService movieInfoService, MovieInfoEventPublisher movieInfoEventPublisher, SignalTracer signalTracer) {
         this.movieInfoService = movieInfoService;
+        this.movieInfoEventPublisher = movieInfoEventPublisher;
+        this.signalTracer = signalTracer;
     }
 
     @PostMapping("/moviesinfo")
@@ -34,24 +56,88 @@ public class MoviesInfoController {
     public Mono<MovieInfo> addMovieInfo(@RequestBody @Valid MovieInfo movieInfo) {
 
         /**
-         * Creating a movie and publishing an event to the Sink - to be consumed by the getMovieInfoStream endpoint
+         * Creating a movie and publishing an event - to be consumed by the getMovieInfoStream & getMovieInfoEvents endpoints
          * **/
         return movieInfoService.addMovieInfo(movieInfo)
-                .doOnNext(savedInfo -> moviesInfoSink.tryEmitNext(savedInfo));
+                .doOnNext(savedInfo -> movieInfoEventPublisher.publish(savedInfo));
     }
 
     /**
-     * A stream endpoint which will subscribe to the movies emitted by addMovieInfo
+     * A stream endpoint which will subscribe to the movies emitted by addMovieInfo and updateMovieById
+     * A newly joined subscriber gets the latest movie only (see getMovieInfoEvents for resuming a stream)
+     * Deleted movies are left out, since the stream carries the movies only (see getMovieInfoEvents for the deletions)
      * **/
     @GetMapping(value = "/moviesinfo/streams", produces = MediaType.APPLICATION_NDJSON_VALUE)
     public Flux<MovieInfo> getMovieInfoStream() {
-        return moviesInfoSink.asFlux();
+        return movieInfoEventPublisher.events(null)
+                .filter(event -> !event.isDeleted())
+                .map(event -> event.getMovieInfo());
     }
 
+    /**
+     * Server-Sent Events variant of the movie info stream, with the sequence number of each movie as the event ID
+     * A reconnecting subscriber sends the last ID it has seen (Last-Event-ID) and receives the movies it has missed meanwhile
+     * A deleted movie comes as a "movieInfoDeleted" event, with the ID of the movie only
+     * **/
+    @GetMapping(value = "/moviesinfo/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<MovieInfo>> getMovieInfoEvents(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return movieInfoEventPublisher.events(lastEventId)
+                .map(event -> ServerSentEvent.builder(event.getMovieInfo())
+                        .id(String.valueOf(event.getSequence()))
+                        .event(event.isDeleted() ? "movieInfoDeleted" : "movieInfo")
+                        .build());
+    }
+
+    /**
+     * Get all movies info, or only the movies matching the given IDs (ex: /v1/moviesinfo?ids=1,2,3)
+     * The IDs are looked up in a single query, so a batch costs one round trip instead of one per movie
+     * The queries are abandoned once the deadline of the caller (X-Request-Timeout-Ms) has passed (see DeadlineWebFilter)
+     * **/
     @GetMapping("/moviesinfo")
     @ResponseStatus(HttpStatus.OK)
-    public Flux<MovieInfo> getAllMoviesInfo() {
-        return movieInfoService.getAllMovies().log();
+    public Flux<MovieInfo> getAllMoviesInfo(@RequestParam(value = "ids", required = false) List<String> ids,
+                                            @RequestParam(value = "cursor", required = false) String cursor) {
+        if (ids != null) {
+            return movieInfoService.getMoviesByIds(ids);
+        }
+
+        if (cursor != null || !unboundedListingEnabled) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be provided, ex: /v1/moviesinfo?limit=100"));
+        }
+
+        return signalTracer.trace("getAllMoviesInfo", null, movieInfoService.getAllMovies());
+    }
+
+    /**
+     * Get a page of movies info, ex: /v1/moviesinfo?limit=100 followed by /v1/moviesinfo?limit=100&cursor={X-Next-Cursor}
+     * The movies are ordered by ID, and the cursor is an opaque token pointing right after the last movie of the previous page (see PageCursor)
+     * One more movie than the limit is read, so that the last page comes without a next cursor (rather than being followed by an empty page)
+     * The next page is given as both the X-Next-Cursor and the Link (rel="next") headers
+     * **/
+    @GetMapping(value = "/moviesinfo", params = {"limit", "!ids"})
+    public Mono<ResponseEntity<List<MovieInfo>>> getMoviesInfoPage(@RequestParam("limit") int limit,
+                                                                   @RequestParam(value = "cursor", required = false) String cursor) {
+        if (limit < 1 || limit > maxPageSize) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("limit must be between 1 and %s", maxPageSize)));
+        }
+
+        return Mono.defer(() -> {
+                    var afterId = cursor != null ? PageCursor.decode(cursor) : null;
+                    return movieInfoService.getMoviesPage(afterId, limit + 1).collectList();
+                })
+                .map(movies -> {
+                    if (movies.size() <= limit) {
+                        return ResponseEntity.ok().body(movies);
+                    }
+
+                    var page = movies.subList(0, limit);
+                    var nextCursor = PageCursor.encode(page.get(limit - 1).getMovieInfoId());
+
+                    return ResponseEntity.ok()
+                            .header(PageCursor.NEXT_CURSOR_HEADER, nextCursor)
+                            .header(HttpHeaders.LINK, String.format("</v1/moviesinfo?limit=%s&cursor=%s>; rel=\"next\"", limit, nextCursor))
+                            .body(page);
+                });
     }
 
     /**
@@ -61,12 +147,11 @@ public class MoviesInfoController {
      * **/
     @GetMapping("/moviesinfo/{id}")
     public Mono<ResponseEntity<MovieInfo>> getMovieById(@PathVariable("id") String id) {
-        return movieInfoService.getMovieById(id)
+        return signalTracer.trace("getMovieById", id, movieInfoService.getMovieById(id)
                 .map(movieInfo -> {
                     return ResponseEntity.ok().body(movieInfo);
                 })
-                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))// return not found if
-                .log();
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build())));// return not found if
     }
 
     /**
@@ -76,12 +161,12 @@ public class MoviesInfoController {
      * **/
     @PutMapping("/moviesinfo/{id}")
     public Mono<ResponseEntity<MovieInfo>> updateMovieById(@RequestBody MovieInfo updatedMovieInfo, @PathVariable("id") String id) {
-        return movieInfoService.updateMovieInfo(updatedMovieInfo, id)
+        return signalTracer.trace("updateMovieById", id, movieInfoService.updateMovieInfo(updatedMovieInfo, id)
+                .doOnNext(savedInfo -> movieInfoEventPublisher.publish(savedInfo)) // publishing the change, ex: for refreshing the movie info caches of the consumers
                 .map(movieInfo -> {
                     return ResponseEntity.ok().body(movieInfo);
                 })
-                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build())) // return not found response if update movie is not found in DB
-                .log();
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))); // return not found response if update movie is not found in DB
     }
 
     /**
@@ -102,9 +187,13 @@ public class MoviesInfoController {
         return movieInfoService.getMoviesByName(name);
     }
 
+    /**
+     * Deleting movie info by ID and publishing a tombstone, so that the consumers evict the movie from their caches
+     * **/
     @DeleteMapping("/moviesinfo/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<Void> deleteMovieById(@PathVariable("id") String id) {
-        return movieInfoService.deleteMovieInfo(id).log();
+        return signalTracer.trace("deleteMovieById", id, movieInfoService.deleteMovieInfo(id)
+                .then(Mono.fromRunnable(() -> movieInfoEventPublisher.publishDeletion(id))));
     }
 }
@@ -0,0 +1,20 @@
+package blog.yrol.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A change of a movie info (created / updated / deleted) published to the movie info stream
+ * The sequence increases monotonically with each event, so that a reconnecting consumer can resume after the last event it has seen
+ * A deleted movie is published as a tombstone - the movie info carries the ID only
+ * **/
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieInfoEvent {
+
+    private long sequence;
+    private MovieInfo movieInfo;
+    private boolean deleted;
+}
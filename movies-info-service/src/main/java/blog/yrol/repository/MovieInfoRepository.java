@@ -1,6 +1,8 @@
 package blog.yrol.repository;
 
 import blog.yrol.domain.MovieInfo;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
@@ -9,4 +11,16 @@ public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo,
     Flux<MovieInfo> findByYear(Integer year);
     
     Flux<MovieInfo> findByName(String name);
+
+    /**
+     * Pages of movies ordered by ID (movieInfoId is the _id, hence both the filter and the sort use the _id index)
+     * IDs are either generated (ObjectId) or given by the client (String), and Mongo orders all the Strings ahead of all the ObjectIds,
+     * while $gt only matches IDs of the same type. Hence, the page after a String ID also takes in the ObjectIds (findAfterStringId).
+     * **/
+    Flux<MovieInfo> findAllBy(Pageable pageable);
+
+    Flux<MovieInfo> findByMovieInfoIdGreaterThan(String movieInfoId, Pageable pageable);
+
+    @Query("{ $or: [ { _id: { $gt: ?0 } }, { _id: { $type: 'objectId' } } ] }")
+    Flux<MovieInfo> findAfterStringId(String movieInfoId, Pageable pageable);
 }
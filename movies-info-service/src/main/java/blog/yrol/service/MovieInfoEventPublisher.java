@@ -0,0 +1,106 @@
+package blog.yrol.service;
+
+import blog.yrol.domain.MovieInfo;
+import blog.yrol.domain.MovieInfoEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishing the movie info changes with a sequence number to the movie info streams (/v1/moviesinfo/streams & /v1/moviesinfo/events)
+ * The last N events are kept in a replay buffer (moviesinfo.stream.replay-size), so that a consumer reconnecting with the
+ * last sequence it has seen (Last-Event-ID) receives the events published while it was disconnected.
+ * A consumer that has been away for longer than the buffer covers sees a gap in the sequence and has to resync on its own.
+ * Metrics - moviesinfo.stream.subscribers (current subscribers of the sink) and moviesinfo.stream.sequence (last published sequence)
+ * **/
+@Component
+@Slf4j
+public class MovieInfoEventPublisher implements MeterBinder {
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final int replaySize;
+
+    private final Sinks.Many<MovieInfoEvent> sink;
+
+    public MovieInfoEventPublisher(@Value("${moviesinfo.stream.replay-size:1000}") int replaySize) {
+        this.replaySize = replaySize;
+        this.sink = Sinks.many().replay().limit(replaySize);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("moviesinfo.stream.subscribers", sink, Sinks.Many::currentSubscriberCount)
+                .register(registry);
+
+        Gauge.builder("moviesinfo.stream.sequence", sequence, AtomicLong::get)
+                .register(registry);
+    }
+
+    public MovieInfoEvent publish(MovieInfo movieInfo) {
+        return emit(movieInfo, false);
+    }
+
+    /**
+     * Publishing a tombstone of the deleted movie (ID only), ex: for evicting the movie from the movie info caches of the consumers
+     * **/
+    public MovieInfoEvent publishDeletion(String movieInfoId) {
+        var movieInfo = new MovieInfo();
+        movieInfo.setMovieInfoId(movieInfoId);
+
+        return emit(movieInfo, true);
+    }
+
+    /**
+     * Synchronized, since the sequence numbers must reach the sink in order and the sink doesn't accept concurrent emissions
+     * **/
+    private synchronized MovieInfoEvent emit(MovieInfo movieInfo, boolean deleted) {
+        var event = new MovieInfoEvent(sequence.incrementAndGet(), movieInfo, deleted);
+
+        var result = sink.tryEmitNext(event);
+        if (result.isFailure()) {
+            log.warn("Movie info event {} was not published: {}", event.getSequence(), result);
+        }
+
+        return event;
+    }
+
+    /**
+     * Events published after the given sequence (lastEventId), followed by the new events
+     * Without a lastEventId only the latest event is replayed (as a newly joined subscriber isn't interested in the history).
+     * A lastEventId ahead of the current sequence is from before a restart of this service, hence everything in the buffer is replayed.
+     * **/
+    public Flux<MovieInfoEvent> events(Long lastEventId) {
+        return Flux.defer(() -> {
+            var current = sequence.get();
+            var after = resumeAfter(lastEventId, current);
+
+            if (lastEventId != null && after < current - replaySize) {
+                log.warn("Movie info events {} to {} are no longer in the replay buffer", after + 1, current - replaySize);
+            }
+
+            return sink.asFlux()
+                    .filter(event -> event.getSequence() > after);
+        });
+    }
+
+    private long resumeAfter(Long lastEventId, long current) {
+        if (lastEventId == null) {
+            return Math.max(current - 1, 0);
+        }
+
+        if (lastEventId > current) {
+            log.info("Last event ID {} is ahead of the current sequence {}, replaying from the start", lastEventId, current);
+            return 0;
+        }
+
+        return lastEventId;
+    }
+}
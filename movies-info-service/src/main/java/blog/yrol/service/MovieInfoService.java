@@ -2,10 +2,15 @@ package blog.yrol.service;
 
 import blog.yrol.domain.MovieInfo;
 import blog.yrol.repository.MovieInfoRepository;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @Service
 public class MovieInfoService {
 
@@ -22,11 +27,34 @@ public class MovieInfoService {
         return movieInfoRepository.findAll();
     }
 
+    /**
+     * Page of movies ordered by ID, starting right after the given ID (the first page when null)
+     * Keyset pagination - each page reads only its own movies from the _id index, however deep into the collection it is (unlike skip)
+     * **/
+    public Flux<MovieInfo> getMoviesPage(String afterId, int size) {
+        var pageable = PageRequest.of(0, size, Sort.by("movieInfoId"));
+
+        if (afterId == null) {
+            return movieInfoRepository.findAllBy(pageable);
+        }
+
+        // IDs that look like an ObjectId are stored as one (same conversion as Spring Data's)
+        if (ObjectId.isValid(afterId)) {
+            return movieInfoRepository.findByMovieInfoIdGreaterThan(afterId, pageable);
+        }
+
+        return movieInfoRepository.findAfterStringId(afterId, pageable);
+    }
+
     public Mono<MovieInfo> getMovieById(String id) {
         return movieInfoRepository
                 .findById(id);
     }
 
+    public Flux<MovieInfo> getMoviesByIds(List<String> ids) {
+        return movieInfoRepository.findAllById(ids);
+    }
+
     public Mono<MovieInfo> updateMovieInfo(MovieInfo updateMovieInfo, String id) {
         return movieInfoRepository.findById(id)
                 .flatMap(movieInfo -> {
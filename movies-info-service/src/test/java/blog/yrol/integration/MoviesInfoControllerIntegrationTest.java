@@ -2,6 +2,7 @@ package blog.yrol.integration;
 
 import blog.yrol.domain.MovieInfo;
 import blog.yrol.repository.MovieInfoRepository;
+import blog.yrol.util.PageCursor;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -74,6 +75,32 @@ class MoviesInfoControllerIntegrationTest {
                 });
     }
 
+    @Test
+    void testGetMoviesInfoPage_whenWalkingAllPages_returnEveryMovieOnce() {
+
+        // One movie per page - "abc" (String ID) is ordered ahead of the generated (ObjectId) one
+        var firstPage = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1)
+                .returnResult();
+
+        assertEquals("abc", firstPage.getResponseBody().get(0).getMovieInfoId());
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit=1&cursor=" + firstPage.getResponseHeaders().getFirst(PageCursor.NEXT_CURSOR_HEADER))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(PageCursor.NEXT_CURSOR_HEADER)
+                .expectBodyList(MovieInfo.class)
+                .value(movies -> assertEquals("Batman Begins", movies.get(0).getName()))
+                .hasSize(1);
+    }
+
     @Test
     void testGetAllMovies_whenCallingTheApi_returnAllMovies() {
 
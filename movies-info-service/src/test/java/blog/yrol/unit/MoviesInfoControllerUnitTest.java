@@ -2,20 +2,33 @@ package blog.yrol.unit;
 
 import blog.yrol.controller.MoviesInfoController;
 import blog.yrol.domain.MovieInfo;
+import blog.yrol.filter.DeadlineWebFilter;
+import blog.yrol.service.MovieInfoEventPublisher;
 import blog.yrol.service.MovieInfoService;
+import blog.yrol.util.PageCursor;
+import blog.yrol.util.SignalTracer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDate;
@@ -24,11 +37,15 @@ import java.util.UUID;
 
 @WebFluxTest(controllers = MoviesInfoController.class)
 @AutoConfigureWebTestClient
+@Import({MovieInfoEventPublisher.class, SignalTracer.class})
 public class MoviesInfoControllerUnitTest {
 
     @Autowired
     private WebTestClient webTestClient;
 
+    @Autowired
+    MovieInfoEventPublisher movieInfoEventPublisher;
+
     @MockBean
     MovieInfoService movieInfoServiceMock;
 
@@ -57,6 +74,88 @@ public class MoviesInfoControllerUnitTest {
 
 
 
+    @Test
+    void testGetMoviesInfoPage_whenMoreMoviesAvailable_returnPageWithNextCursor() {
+
+        var moviesInfo = List.of(
+                new MovieInfo("a", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("b", "The Dark Knight", 2008, List.of("Christian Bale", "Heath Ledger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("c", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"))
+        );
+
+        // One more movie than the limit is requested, for finding out whether there is a next page
+        when(movieInfoServiceMock.getMoviesPage(null, 3)).thenReturn(Flux.fromIterable(moviesInfo));
+        when(movieInfoServiceMock.getMoviesPage("b", 3)).thenReturn(Flux.just(moviesInfo.get(2)));
+
+        var nextCursor = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.LINK)
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2)
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst(PageCursor.NEXT_CURSOR_HEADER);
+
+        // Last page comes without a next cursor
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit=2&cursor=" + nextCursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(PageCursor.NEXT_CURSOR_HEADER)
+                .expectBodyList(MovieInfo.class)
+                .contains(moviesInfo.get(2))
+                .hasSize(1);
+    }
+
+    @Test
+    void testGetMoviesInfoPage_whenLimitIsOutOfRange_returnBadRequest() {
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit=0")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit=1001")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testGetMoviesInfoPage_whenCursorIsInvalid_returnBadRequest() {
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit=2&cursor=@@@")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void getMoviesInfoByIds() {
+
+        var moviesInfo = List.of(
+                new MovieInfo("abc", "The Dark Knight", 2008, List.of("Christian Bale", "Heath Ledger"), LocalDate.parse("2008-07-18"))
+        );
+
+        when(movieInfoServiceMock.getMoviesByIds(List.of("abc", "def"))).thenReturn(Flux.fromIterable(moviesInfo));
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?ids=abc,def")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
     @Test
     void getMovieById() {
         var movieInfo = new MovieInfo("abc", "The Dark Knight", 2008, List.of("Christian Bale", "Heath Ledger"), LocalDate.parse("2008-07-18"));
@@ -77,6 +176,53 @@ public class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void testGetMovieById_whenSmilePreferred_returnMovieInSmile() {
+        var movieInfo = new MovieInfo("abc", "The Dark Knight", 2008, List.of("Christian Bale", "Heath Ledger"), LocalDate.parse("2008-07-18"));
+
+        when(movieInfoServiceMock.getMovieById("abc")).thenReturn(Mono.just(movieInfo));
+
+        // Decoded by the Smile decoder of the WebTestClient
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/abc")
+                .header(HttpHeaders.ACCEPT, "application/x-jackson-smile, application/json;q=0.9")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().contentType("application/x-jackson-smile")
+                .expectBody(MovieInfo.class)
+                .isEqualTo(movieInfo);
+    }
+
+    @Test
+    void testGetMovieById_whenDeadlineExpired_returnGatewayTimeoutWithoutQuerying() {
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/abc")
+                .header(DeadlineWebFilter.HEADER, "0")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+
+        verifyNoInteractions(movieInfoServiceMock);
+    }
+
+    @Test
+    void testGetMovieById_whenQueryTakesLongerThanDeadline_returnGatewayTimeout() {
+
+        when(movieInfoServiceMock.getMovieById("abc")).thenReturn(Mono.never());
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/abc")
+                .header(DeadlineWebFilter.HEADER, "100")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+    }
+
     @Test
     void testCreateMovie_whenValidDataIsProvided_createAndReturnMovie() {
         var movieInfo = new MovieInfo(UUID.randomUUID().toString(), "The Dark Knight", 2008, List.of("Christian Bale", "Heath Ledger"), LocalDate.parse("2008-07-18"));
@@ -122,6 +268,66 @@ public class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void testGetMovieInfoStream_whenSubscribed_countSubscribersInGauge() {
+
+        var meterRegistry = new SimpleMeterRegistry();
+        movieInfoEventPublisher.bindTo(meterRegistry);
+        var subscribers = meterRegistry.get("moviesinfo.stream.subscribers").gauge();
+
+        // Latest movie replayed to the subscriber, so that the response is committed (not left to the events published by the other tests)
+        movieInfoEventPublisher.publish(new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")));
+
+        var subscription = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/streams")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieInfo.class)
+                .getResponseBody()
+                .subscribe();
+
+        try {
+            assertEquals(1.0, subscribers.value());
+        } finally {
+            subscription.dispose();
+        }
+    }
+
+    @Test
+    void testGetMovieInfoEvents_whenLastEventIdIsProvided_replayMissedEventsInOrder() {
+
+        // Arrange (events published while the subscriber was disconnected)
+        var lastSeen = movieInfoEventPublisher.publish(new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")));
+        movieInfoEventPublisher.publish(new MovieInfo("2", "The Dark Knight", 2008, List.of("Christian Bale"), LocalDate.parse("2008-07-18")));
+        movieInfoEventPublisher.publish(new MovieInfo("3", "The Dark Knight Rises", 2012, List.of("Christian Bale"), LocalDate.parse("2012-07-20")));
+
+        // Act
+        var events = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header("Last-Event-ID", String.valueOf(lastSeen.getSequence()))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<MovieInfo>>() {})
+                .getResponseBody();
+
+        // Assert (resuming right after the last seen event)
+        StepVerifier.create(events)
+                .assertNext(event -> {
+                    assertEquals(String.valueOf(lastSeen.getSequence() + 1), event.id());
+                    assertEquals("The Dark Knight", event.data().getName());
+                })
+                .assertNext(event -> {
+                    assertEquals(String.valueOf(lastSeen.getSequence() + 2), event.id());
+                    assertEquals("The Dark Knight Rises", event.data().getName());
+                })
+                .thenCancel()
+                .verify();
+    }
+
     @Test
     void updateMovie() {
         var movieInfo = new MovieInfo("abc", "The Dark Knight", 2008, List.of("Christian Bale", "Heath Ledger"), LocalDate.parse("2008-07-18"));
@@ -154,4 +360,41 @@ public class MoviesInfoControllerUnitTest {
                 .expectStatus()
                 .isNoContent();
     }
+
+    @Test
+    void testDeleteMovie_whenDeleted_publishMovieInfoDeletedEvent() {
+
+        // Arrange
+        var lastSeen = movieInfoEventPublisher.publish(new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")));
+        when(movieInfoServiceMock.deleteMovieInfo(anyString())).thenReturn(Mono.empty());
+
+        // Act
+        webTestClient
+                .delete()
+                .uri(MOVIES_INFO_URL + "/abc")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        var events = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header("Last-Event-ID", String.valueOf(lastSeen.getSequence()))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<MovieInfo>>() {})
+                .getResponseBody();
+
+        // Assert (tombstone with the next sequence number)
+        StepVerifier.create(events)
+                .assertNext(event -> {
+                    assertEquals(String.valueOf(lastSeen.getSequence() + 1), event.id());
+                    assertEquals("movieInfoDeleted", event.event());
+                    assertEquals("abc", event.data().getMovieInfoId());
+                })
+                .thenCancel()
+                .verify();
+    }
 }
@@ -0,0 +1,63 @@
+package blog.yrol.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writing the results of the scenarios to the report directory
+ * report.txt - throughput & latency percentiles (ms) of each scenario
+ * {scenario}.hgrm - full HDR percentile distribution (ms) of each scenario, ex: for plotting with the HdrHistogram plotter
+ * **/
+@Slf4j
+public class LoadReport {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private static final String HEADER = String.format("%-36s %10s %10s %10s %10s %14s %10s %10s %10s %10s %10s",
+            "Scenario", "Rate/s", "Sent", "Succeeded", "Failed", "Throughput/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+    public static Path write(Path directory, List<ScenarioResult> results) throws IOException {
+        Files.createDirectories(directory);
+
+        var report = directory.resolve("report.txt");
+        try (var out = new PrintStream(Files.newOutputStream(report))) {
+            out.println(HEADER);
+            for (var result : results) {
+                out.println(summary(result));
+            }
+        }
+
+        for (var result : results) {
+            var distribution = directory.resolve(fileName(result.getScenario()) + ".hgrm");
+            try (var out = new PrintStream(Files.newOutputStream(distribution))) {
+                result.getLatencies().outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+        }
+
+        log.info("Load test report ({}):\n{}\n{}", report.toAbsolutePath(), HEADER, String.join("\n", results.stream().map(LoadReport::summary).toArray(String[]::new)));
+
+        return report;
+    }
+
+    private static String summary(ScenarioResult result) {
+        var latencies = result.getLatencies();
+
+        return String.format("%-36s %10.1f %10d %10d %10d %14.1f %10.2f %10.2f %10.2f %10.2f %10.2f",
+                result.getScenario(), result.getRatePerSecond(), result.getSent(), result.getSucceeded(), result.getFailed(), result.throughputPerSecond(),
+                latencies.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                latencies.getValueAtPercentile(90) / NANOS_PER_MILLI,
+                latencies.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                latencies.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                latencies.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+    // Ex: "GET /v1/movies/{id}" -> "GET_v1_movies_id"
+    private static String fileName(String scenario) {
+        return scenario.replaceAll("[^A-Za-z0-9.-]+", "_").replaceAll("_+$", "");
+    }
+}
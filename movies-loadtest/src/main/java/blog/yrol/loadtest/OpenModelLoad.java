@@ -0,0 +1,108 @@
+package blog.yrol.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Recorder;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open model load - the requests are sent at a constant arrival rate, whatever the response times
+ * (unlike a fixed number of looping users, which slow down along with the service and hide its latency).
+ * The latency of a request is measured from the time it was meant to be sent, hence a request held back (ex: by a stalled sender)
+ * counts its waiting time as well (no coordinated omission).
+ * The warmup requests are sent the same way, but aren't recorded.
+ * **/
+@Slf4j
+public class OpenModelLoad {
+
+    /**
+     * A request of the scenario, given the time (System.nanoTime) it was meant to be sent and whether it's recorded (sent after the warmup)
+     * **/
+    @FunctionalInterface
+    public interface Request {
+        Mono<?> send(long intendedNanos, boolean recorded);
+    }
+
+    private final double ratePerSecond;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Duration requestTimeout;
+
+    public OpenModelLoad(double ratePerSecond, Duration warmup, Duration duration, Duration requestTimeout) {
+        this.ratePerSecond = ratePerSecond;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Sending the requests of the scenario for the warmup & the duration, then waiting for the requests still in flight (up to the request timeout)
+     * A request failing or timing out is counted as failed, and isn't part of the latencies.
+     * **/
+    public ScenarioResult run(String scenario, Request request) {
+        var intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        var latencies = new Recorder(3);
+        var sent = new LongAdder();
+        var succeeded = new LongAdder();
+        var failed = new LongAdder();
+        var inFlight = new AtomicInteger();
+
+        log.info("Running {} at {} requests/s ({} warmup, {})", scenario, ratePerSecond, warmup, duration);
+
+        var start = System.nanoTime();
+        var measureStart = start + warmup.toNanos();
+        var end = measureStart + duration.toNanos();
+
+        for (long i = 0; ; i++) {
+            var intendedNanos = start + i * intervalNanos;
+            if (intendedNanos >= end) {
+                break;
+            }
+
+            waitUntil(intendedNanos);
+
+            var recorded = intendedNanos >= measureStart;
+            if (recorded) {
+                sent.increment();
+            }
+
+            inFlight.incrementAndGet();
+            request.send(intendedNanos, recorded)
+                    .timeout(requestTimeout)
+                    .subscribe(
+                            value -> {},
+                            ex -> {
+                                if (recorded) {
+                                    failed.increment();
+                                }
+                                inFlight.decrementAndGet();
+                            },
+                            () -> {
+                                if (recorded) {
+                                    latencies.recordValue(System.nanoTime() - intendedNanos);
+                                    succeeded.increment();
+                                }
+                                inFlight.decrementAndGet();
+                            });
+        }
+
+        // Every request is over within the request timeout (the timeout above)
+        var drainDeadline = System.nanoTime() + requestTimeout.toNanos() + Duration.ofSeconds(1).toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(Duration.ofMillis(10).toNanos());
+        }
+
+        return new ScenarioResult(scenario, ratePerSecond, duration, sent.sum(), succeeded.sum(), failed.sum(), latencies.getIntervalHistogram());
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package blog.yrol.loadtest;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+
+/**
+ * Outcome of a load scenario - the requests sent (after the warmup), their outcome and the latencies (nanos) of the successful ones
+ * **/
+@Getter
+@AllArgsConstructor
+public class ScenarioResult {
+
+    private final String scenario;
+    private final double ratePerSecond;
+    private final Duration duration;
+    private final long sent;
+    private final long succeeded;
+    private final long failed;
+    private final Histogram latencies;
+
+    public double throughputPerSecond() {
+        return succeeded / (duration.toMillis() / 1000.0);
+    }
+}
@@ -0,0 +1,100 @@
+package blog.yrol.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.loader.LaunchedURLClassLoader;
+import org.springframework.boot.loader.archive.Archive;
+import org.springframework.boot.loader.archive.JarFileArchive;
+import org.springframework.boot.loader.jar.JarFile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starting a microservice in-process from its executable jar (the "exec" jar built by the spring-boot-maven-plugin)
+ * Each microservice gets its own class loader over the classes & libs of its jar (BOOT-INF), parented by the platform class loader,
+ * since the microservices share package & class names (ex: blog.yrol.domain.Review) and their own versions of the static state (ex: Reactor Netty resources).
+ * **/
+@Slf4j
+public class ServiceLauncher {
+
+    private static final String CLASSES = "BOOT-INF/classes/";
+    private static final String LIB = "BOOT-INF/lib/";
+
+    static {
+        // Handling the nested jar URLs (jar:file:...-exec.jar!/BOOT-INF/lib/...jar!/)
+        JarFile.registerUrlProtocolHandler();
+    }
+
+    /**
+     * Starting the Spring Boot application of the jar with the given arguments (ex: --server.port=8080), returning once it's started
+     * Closing the returned service closes its application context.
+     * **/
+    public static RunningService start(String name, File jar, List<String> args) throws Exception {
+        var archive = new JarFileArchive(jar);
+        var startClass = archive.getManifest().getMainAttributes().getValue("Start-Class");
+
+        var urls = new ArrayList<URL>();
+        var nestedArchives = archive.getNestedArchives(entry -> entry.getName().startsWith("BOOT-INF/"), ServiceLauncher::isNestedArchive);
+        while (nestedArchives.hasNext()) {
+            urls.add(nestedArchives.next().getUrl());
+        }
+
+        var classLoader = new LaunchedURLClassLoader(false, archive, urls.toArray(URL[]::new), ClassLoader.getPlatformClassLoader());
+
+        // The threads started by the application (ex: event loops) inherit the context class loader of the starting thread
+        var thread = Thread.currentThread();
+        var previousClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+
+        try {
+            log.info("Starting {} ({}) from {}", name, startClass, jar);
+
+            var springApplication = classLoader.loadClass("org.springframework.boot.SpringApplication");
+            var context = springApplication.getMethod("run", Class.class, String[].class)
+                    .invoke(null, classLoader.loadClass(startClass), args.toArray(String[]::new));
+
+            return new RunningService(name, (Closeable) context, archive);
+        } finally {
+            thread.setContextClassLoader(previousClassLoader);
+        }
+    }
+
+    public static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static boolean isNestedArchive(Archive.Entry entry) {
+        return entry.isDirectory() ? entry.getName().equals(CLASSES) : entry.getName().startsWith(LIB);
+    }
+
+    public static final class RunningService implements Closeable {
+
+        private final String name;
+        private final Closeable context;
+        private final JarFileArchive archive;
+
+        private RunningService(String name, Closeable context, JarFileArchive archive) {
+            this.name = name;
+            this.context = context;
+            this.archive = archive;
+        }
+
+        @Override
+        public void close() throws IOException {
+            log.info("Stopping {}", name);
+
+            try {
+                context.close();
+            } finally {
+                archive.close();
+            }
+        }
+    }
+}
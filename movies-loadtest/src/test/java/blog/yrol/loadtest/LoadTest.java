@@ -0,0 +1,243 @@
+package blog.yrol.loadtest;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Versions;
+import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end load test of the three microservices, started in-process (see ServiceLauncher) against an embedded Mongo DB
+ * The movies info and reviews services are seeded with loadtest.movies movies and loadtest.reviews-per-movie reviews per movie, then each scenario
+ * is run with an open model load (see OpenModelLoad) for loadtest.warmup + loadtest.duration:
+ * GET /v1/movies/{id} - movie with its reviews, aggregated by the movies service (loadtest.rate)
+ * GET /v1/moviesinfo - listing of all the movies by the movies info service (loadtest.listing-rate)
+ * POST /v1/moviesinfo - new movies (loadtest.stream-rate), delivered to loadtest.stream-subscribers subscribers of the movies service stream
+ * (GET /v1/movies/streams) - the delivery latency is the time between sending the new movie and a subscriber receiving it
+ * Throughput & HDR latency percentiles are written to loadtest.report-dir (see LoadReport)
+ * Run with: mvn verify -pl movies-loadtest -am -Ploadtest
+ * **/
+@Tag("loadtest")
+public class LoadTest {
+
+    private static final double RATE = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+    private static final double LISTING_RATE = Double.parseDouble(System.getProperty("loadtest.listing-rate", "20"));
+    private static final double STREAM_RATE = Double.parseDouble(System.getProperty("loadtest.stream-rate", "20"));
+    private static final int STREAM_SUBSCRIBERS = Integer.parseInt(System.getProperty("loadtest.stream-subscribers", "10"));
+    private static final Duration WARMUP = Duration.parse(System.getProperty("loadtest.warmup", "PT10S"));
+    private static final Duration DURATION = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+    private static final Duration REQUEST_TIMEOUT = Duration.parse(System.getProperty("loadtest.request-timeout", "PT10S"));
+    private static final int MOVIES = Integer.parseInt(System.getProperty("loadtest.movies", "100"));
+    private static final int REVIEWS_PER_MOVIE = Integer.parseInt(System.getProperty("loadtest.reviews-per-movie", "10"));
+    private static final int MAX_CONNECTIONS = Integer.parseInt(System.getProperty("loadtest.max-connections", "1000"));
+    private static final String MONGO_VERSION = System.getProperty("loadtest.mongo.version", "3.5.5"); // same version as the integration tests
+    private static final Path REPORT_DIR = Path.of(System.getProperty("loadtest.report-dir", "target/loadtest"));
+
+    private static MongodExecutable mongod;
+    private static final List<ServiceLauncher.RunningService> services = new ArrayList<>();
+
+    private static WebClient webClient;
+    private static String moviesInfoUrl;
+    private static String reviewsUrl;
+    private static String moviesUrl;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        var mongoPort = ServiceLauncher.freePort();
+        mongod = MongodStarter.getDefaultInstance().prepare(MongodConfig.builder()
+                .version(Versions.withFeatures(Version.of(MONGO_VERSION)))
+                .net(new Net("localhost", mongoPort, Network.localhostIsIPv6()))
+                .build());
+        mongod.start();
+
+        var moviesInfoPort = ServiceLauncher.freePort();
+        var reviewsPort = ServiceLauncher.freePort();
+        var moviesPort = ServiceLauncher.freePort();
+
+        moviesInfoUrl = String.format("http://localhost:%s/v1/moviesinfo", moviesInfoPort);
+        reviewsUrl = String.format("http://localhost:%s/v1/reviews", reviewsPort);
+        moviesUrl = String.format("http://localhost:%s/v1/movies", moviesPort);
+
+        services.add(ServiceLauncher.start("movies-info-service", jar("movies-info-service"), List.of(
+                "--server.port=" + moviesInfoPort,
+                String.format("--spring.data.mongodb.uri=mongodb://localhost:%s/movies-info-loadtest", mongoPort),
+                "--logging.level.root=warn")));
+
+        services.add(ServiceLauncher.start("movies-review-service", jar("movies-review-service"), List.of(
+                "--server.port=" + reviewsPort,
+                String.format("--spring.data.mongodb.uri=mongodb://localhost:%s/movies-review-loadtest", mongoPort),
+                "--logging.level.root=warn")));
+
+        services.add(ServiceLauncher.start("movies-service", jar("movies-service"), List.of(
+                "--server.port=" + moviesPort,
+                "--rest.client.moviesInfoUrl=" + moviesInfoUrl,
+                "--rest.client.reviewsUrl=" + reviewsUrl,
+                "--logging.level.root=warn")));
+
+        var connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(MAX_CONNECTIONS)
+                .pendingAcquireMaxCount(-1)
+                .build();
+
+        webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .build();
+
+        seed();
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        for (int i = services.size() - 1; i >= 0; i--) {
+            services.get(i).close();
+        }
+
+        if (mongod != null) {
+            mongod.stop();
+        }
+    }
+
+    @Test
+    void testEndToEndLoad_whenOpenModelLoadApplied_reportThroughputAndLatencyPercentiles() throws Exception {
+
+        var results = new ArrayList<ScenarioResult>();
+
+        results.add(new OpenModelLoad(RATE, WARMUP, DURATION, REQUEST_TIMEOUT).run("GET /v1/movies/{id}", (intendedNanos, recorded) -> webClient
+                .get()
+                .uri(moviesUrl + "/{id}", ThreadLocalRandom.current().nextInt(1, MOVIES + 1))
+                .retrieve()
+                .bodyToMono(byte[].class)));
+
+        results.add(new OpenModelLoad(LISTING_RATE, WARMUP, DURATION, REQUEST_TIMEOUT).run("GET /v1/moviesinfo", (intendedNanos, recorded) -> webClient
+                .get()
+                .uri(moviesInfoUrl)
+                .retrieve()
+                .bodyToMono(byte[].class)));
+
+        results.addAll(runStreamScenario());
+
+        LoadReport.write(REPORT_DIR, results);
+
+        for (var result : results) {
+            assertTrue(result.getSucceeded() > 0, String.format("No successful request in %s", result.getScenario()));
+        }
+    }
+
+    /**
+     * New movies sent to the movies info service, and their delivery to the subscribers of the movies service stream
+     * Each new movie is named after the time it was meant to be sent, which gives the delivery latency on receipt (same clock, in-process).
+     * A movie missed by a subscriber (ex: dropped from the buffer of a slow subscriber) is counted as a failed delivery.
+     * **/
+    private List<ScenarioResult> runStreamScenario() throws InterruptedException {
+        var sentMovies = new ConcurrentHashMap<String, Long>();
+        var deliveryLatencies = new Recorder(3);
+        var delivered = new LongAdder();
+
+        var subscriptions = new ArrayList<Disposable>();
+        for (int i = 0; i < STREAM_SUBSCRIBERS; i++) {
+            subscriptions.add(webClient
+                    .get()
+                    .uri(moviesUrl + "/streams")
+                    .accept(MediaType.APPLICATION_NDJSON)
+                    .retrieve()
+                    .bodyToFlux(new ParameterizedTypeReference<Map<String, Object>>() {})
+                    .subscribe(movieInfo -> {
+                        var intendedNanos = sentMovies.get(String.valueOf(movieInfo.get("name")));
+                        if (intendedNanos != null) {
+                            deliveryLatencies.recordValue(System.nanoTime() - intendedNanos);
+                            delivered.increment();
+                        }
+                    }));
+        }
+
+        try {
+            // Letting the subscribers connect before the first movie is sent
+            Thread.sleep(1000);
+
+            var sendResult = new OpenModelLoad(STREAM_RATE, WARMUP, DURATION, REQUEST_TIMEOUT).run("POST /v1/moviesinfo", (intendedNanos, recorded) -> {
+                var name = "loadtest-" + intendedNanos;
+                if (recorded) {
+                    sentMovies.put(name, intendedNanos);
+                }
+
+                return webClient
+                        .post()
+                        .uri(moviesInfoUrl)
+                        .bodyValue(Map.of("name", name, "year", 2005, "cast", List.of("Christian Bale"), "release_date", "2005-06-15"))
+                        .retrieve()
+                        .bodyToMono(byte[].class);
+            });
+
+            // Letting the last movies be delivered
+            Thread.sleep(2000);
+
+            var expected = sendResult.getSucceeded() * STREAM_SUBSCRIBERS;
+            var deliveryResult = new ScenarioResult("GET /v1/movies/streams (delivery)", STREAM_RATE, DURATION,
+                    expected, delivered.sum(), expected - delivered.sum(), deliveryLatencies.getIntervalHistogram());
+
+            return List.of(sendResult, deliveryResult);
+        } finally {
+            subscriptions.forEach(Disposable::dispose);
+        }
+    }
+
+    /**
+     * Movies with a numeric ID (1 - loadtest.movies), since the reviews refer to the movies by a numeric movieInfoId
+     * **/
+    private static void seed() {
+        Flux.range(1, MOVIES)
+                .flatMap(id -> webClient
+                        .post()
+                        .uri(moviesInfoUrl)
+                        .bodyValue(Map.of("movieInfoId", String.valueOf(id), "name", "Movie " + id, "year", 2000 + id % 20,
+                                "cast", List.of("Actor " + id), "release_date", "2005-06-15"))
+                        .retrieve()
+                        .toBodilessEntity(), 16)
+                .blockLast(Duration.ofMinutes(1));
+
+        Flux.range(0, MOVIES * REVIEWS_PER_MOVIE)
+                .flatMap(i -> webClient
+                        .post()
+                        .uri(reviewsUrl)
+                        .bodyValue(Map.of("movieInfoId", (long) (i % MOVIES + 1), "comment", "Review " + i, "rating", (double) (i % 10)))
+                        .retrieve()
+                        .toBodilessEntity(), 16)
+                .blockLast(Duration.ofMinutes(1));
+    }
+
+    private static File jar(String service) {
+        var jar = System.getProperty(String.format("loadtest.%s.jar", service));
+        if (jar == null || !new File(jar).isFile()) {
+            throw new IllegalStateException(String.format("Executable jar of %s not found (%s), run with: mvn verify -pl movies-loadtest -am -Ploadtest", service, jar));
+        }
+
+        return new File(jar);
+    }
+}
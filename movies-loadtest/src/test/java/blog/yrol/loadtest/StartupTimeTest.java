@@ -0,0 +1,256 @@
+package blog.yrol.loadtest;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Versions;
+import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Time to first request of each microservice - from launching its JVM to its first successful response to the request its training run sends
+ * (see StartupConfig): GET /v1/moviesinfo/1, GET /v1/reviews?movieInfoId=1 and GET /v1/movies/1 (movie info & reviews of the movie 1),
+ * the way an autoscaled instance is started (own JVM, same heap as docker/services.yml), with and without the startup optimizations:
+ * exec jar - as deployed today (executable jar, nested jars)
+ * startup jar - plain jar & lib directory (see the appcds Maven profile), eager initialization
+ * lazy - the fast-startup profile (lazy initialization, see StartupConfig)
+ * AppCDS - the class data sharing archive of the training run (target/startup/app.jsa)
+ * The movies info and reviews services are served by an embedded Mongo DB, seeded with the movie 1 and a review of it through in-process instances
+ * of both services (see ServiceLauncher), which are also the downstream services of the measured movies service.
+ * The medians (loadtest.startup.runs runs) are written to loadtest.report-dir/startup.txt
+ * Run with: mvn verify -pl movies-loadtest -am -Ploadtest,appcds -Dtest=StartupTimeTest
+ * **/
+@Tag("loadtest")
+@Slf4j
+public class StartupTimeTest {
+
+    private static final int RUNS = Integer.parseInt(System.getProperty("loadtest.startup.runs", "3"));
+    private static final Duration STARTUP_TIMEOUT = Duration.parse(System.getProperty("loadtest.startup.timeout", "PT2M"));
+    private static final Path REPORT_DIR = Path.of(System.getProperty("loadtest.report-dir", "target/loadtest"));
+
+    private static final List<String> JVM_OPTIONS = List.of("-Xms128m", "-Xmx256m");
+    private static final String FAST_STARTUP = "--spring.profiles.active=dev,fast-startup";
+    private static final String MONGO_VERSION = System.getProperty("loadtest.mongo.version", "3.5.5"); // same version as the integration tests
+
+    private static final List<String> SERVICES = List.of("movies-info-service", "movies-review-service", "movies-service");
+
+    // Same requests as the training runs (startup.training-run.path)
+    private static final Map<String, String> FIRST_REQUESTS = Map.of(
+            "movies-info-service", "/v1/moviesinfo/1",
+            "movies-review-service", "/v1/reviews?movieInfoId=1",
+            "movies-service", "/v1/movies/1");
+
+    // Relative to the module directory, as when the archive was dumped (the class path has to match)
+    private static final String ARCHIVE = "target/startup/app.jsa";
+
+    private static MongodExecutable mongod;
+    private static final List<ServiceLauncher.RunningService> downstreamServices = new ArrayList<>();
+
+    // Arguments of each measured service, pointing it to the embedded Mongo DB or to the downstream services
+    private static final Map<String, List<String>> serviceArgs = new LinkedHashMap<>();
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(100)).build();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        var mongoPort = ServiceLauncher.freePort();
+        mongod = MongodStarter.getDefaultInstance().prepare(MongodConfig.builder()
+                .version(Versions.withFeatures(Version.of(MONGO_VERSION)))
+                .net(new Net("localhost", mongoPort, Network.localhostIsIPv6()))
+                .build());
+        mongod.start();
+
+        var moviesInfoMongo = String.format("--spring.data.mongodb.uri=mongodb://localhost:%s/movies-info-startup", mongoPort);
+        var reviewsMongo = String.format("--spring.data.mongodb.uri=mongodb://localhost:%s/movies-review-startup", mongoPort);
+
+        var moviesInfoPort = ServiceLauncher.freePort();
+        var reviewsPort = ServiceLauncher.freePort();
+        var moviesInfoUrl = String.format("http://localhost:%s/v1/moviesinfo", moviesInfoPort);
+        var reviewsUrl = String.format("http://localhost:%s/v1/reviews", reviewsPort);
+
+        downstreamServices.add(ServiceLauncher.start("movies-info-service", execJar("movies-info-service"),
+                List.of("--server.port=" + moviesInfoPort, moviesInfoMongo, "--logging.level.root=warn")));
+        downstreamServices.add(ServiceLauncher.start("movies-review-service", execJar("movies-review-service"),
+                List.of("--server.port=" + reviewsPort, reviewsMongo, "--logging.level.root=warn")));
+
+        seed(moviesInfoUrl, "{\"movieInfoId\":\"1\",\"name\":\"Batman Begins\",\"year\":2005,\"cast\":[\"Christian Bale\"],\"release_date\":\"2005-06-15\"}");
+        seed(reviewsUrl, "{\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}");
+
+        serviceArgs.put("movies-info-service", List.of(moviesInfoMongo));
+        serviceArgs.put("movies-review-service", List.of(reviewsMongo));
+        serviceArgs.put("movies-service", List.of("--rest.client.moviesInfoUrl=" + moviesInfoUrl, "--rest.client.reviewsUrl=" + reviewsUrl));
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        for (int i = downstreamServices.size() - 1; i >= 0; i--) {
+            downstreamServices.get(i).close();
+        }
+
+        if (mongod != null) {
+            mongod.stop();
+        }
+    }
+
+    @Test
+    void testStartup_whenStartedWithAndWithoutOptimizations_reportTimeToFirstRequest() throws Exception {
+
+        var report = new ArrayList<String>();
+        report.add(String.format("%-24s %-28s %12s %12s %12s", "Service", "Configuration", "median ms", "min ms", "max ms"));
+
+        var expectedMedians = 0;
+        var medians = new LinkedHashMap<String, Long>();
+
+        for (var service : SERVICES) {
+            var moduleDir = new File(System.getProperty(String.format("loadtest.%s.dir", service)));
+            var execJar = execJar(service).getPath();
+            var startupJar = String.format("target/startup/%s-1.0-SNAPSHOT-startup.jar", service);
+
+            if (!new File(moduleDir, ARCHIVE).isFile()) {
+                throw new IllegalStateException(String.format("Class data sharing archive of %s not found, run with: mvn verify -pl movies-loadtest -am -Ploadtest,appcds -Dtest=StartupTimeTest", service));
+            }
+
+            var configurations = new LinkedHashMap<String, List<String>>();
+            configurations.put("exec jar", command(List.of(), "-jar", execJar));
+            configurations.put("startup jar", command(List.of(), "-jar", startupJar));
+            configurations.put("startup jar + lazy", command(List.of(), "-jar", startupJar, FAST_STARTUP));
+            configurations.put("startup jar + AppCDS", command(List.of("-Xshare:on", "-XX:SharedArchiveFile=" + ARCHIVE), "-jar", startupJar));
+            configurations.put("startup jar + lazy + AppCDS", command(List.of("-Xshare:on", "-XX:SharedArchiveFile=" + ARCHIVE), "-jar", startupJar, FAST_STARTUP));
+
+            expectedMedians += configurations.size();
+
+            for (var configuration : configurations.entrySet()) {
+                var times = new long[RUNS];
+                for (int run = 0; run < RUNS; run++) {
+                    times[run] = timeToFirstRequest(service, moduleDir, configuration.getValue());
+                }
+
+                Arrays.sort(times);
+                medians.put(service + " / " + configuration.getKey(), times[RUNS / 2]);
+                report.add(String.format("%-24s %-28s %12d %12d %12d", service, configuration.getKey(), times[RUNS / 2], times[0], times[RUNS - 1]));
+            }
+        }
+
+        Files.createDirectories(REPORT_DIR);
+        try (var out = new PrintStream(Files.newOutputStream(REPORT_DIR.resolve("startup.txt")))) {
+            report.forEach(out::println);
+        }
+
+        log.info("Time to first request ({} runs):\n{}", RUNS, String.join("\n", report));
+
+        // Every configuration of every service got a time to first request
+        assertEquals(expectedMedians, medians.size());
+        medians.forEach((configuration, median) -> assertTrue(median > 0, configuration));
+    }
+
+    /**
+     * Seeding the given service (POST), ex: the movie 1 requested by the first requests
+     * **/
+    private static void seed(String url, String json) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+
+        var status = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 201) {
+            throw new IllegalStateException(String.format("Seeding %s failed (%s)", url, status));
+        }
+    }
+
+    private static File execJar(String service) {
+        var jar = System.getProperty(String.format("loadtest.%s.jar", service));
+        if (jar == null || !new File(jar).isFile()) {
+            throw new IllegalStateException(String.format("Executable jar of %s not found (%s), run with: mvn verify -pl movies-loadtest -am -Ploadtest,appcds -Dtest=StartupTimeTest", service, jar));
+        }
+
+        return new File(jar);
+    }
+
+    private static List<String> command(List<String> jvmOptions, String... args) {
+        var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(JVM_OPTIONS);
+        command.addAll(jvmOptions);
+        command.addAll(List.of(args));
+
+        return command;
+    }
+
+    /**
+     * Milliseconds from launching the JVM to the first successful response to the first request of the service (FIRST_REQUESTS)
+     * **/
+    private long timeToFirstRequest(String service, File moduleDir, List<String> command) throws IOException, InterruptedException {
+        var port = ServiceLauncher.freePort();
+        var request = HttpRequest.newBuilder(URI.create(String.format("http://localhost:%s%s", port, FIRST_REQUESTS.get(service))))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+
+        var withPort = new ArrayList<>(command);
+        withPort.add("--server.port=" + port);
+        withPort.addAll(serviceArgs.get(service));
+
+        var logFile = REPORT_DIR.resolve(String.format("startup-%s.log", service)).toFile();
+        Files.createDirectories(REPORT_DIR);
+
+        var start = System.nanoTime();
+        var process = new ProcessBuilder(withPort)
+                .directory(moduleDir)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile)
+                .start();
+
+        try {
+            var deadline = start + STARTUP_TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(String.format("%s exited (%s) before serving a request, see %s", service, process.exitValue(), logFile));
+                }
+
+                try {
+                    if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+
+                Thread.sleep(10);
+            }
+
+            throw new IllegalStateException(String.format("%s not serving requests after %s, see %s", service, STARTUP_TIMEOUT, logFile));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package blog.yrol.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Rating summary of the reviews of a movie, computed by the database (see ReviewReactiveRepository.summarizeReviewsByMovieInfoId)
+ * Only the reviews with a rating are summarized.
+ * histogram - number of reviews per whole rating, ex: a rating of 8.5 counts towards 8 (sorted by the rating, ratings without any reviews are omitted)
+ * **/
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewSummary {
+
+    private Long count;
+    private Double average;
+    private Double min;
+    private Double max;
+    private List<RatingCount> histogram;
+
+    // Summary of a movie without any rated reviews
+    public static ReviewSummary empty() {
+        return new ReviewSummary(0L, null, null, null, List.of());
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RatingCount {
+        private Integer rating;
+        private Long count;
+    }
+}
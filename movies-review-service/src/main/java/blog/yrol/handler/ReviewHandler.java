@@ -1,29 +1,64 @@
 package blog.yrol.handler;
 
 import blog.yrol.domain.Review;
+import blog.yrol.domain.ReviewSummary;
 import blog.yrol.exception.ReviewDataException;
 import blog.yrol.exception.ReviewNotFoundException;
 import blog.yrol.repository.ReviewReactiveRepository;
+import blog.yrol.util.PageCursor;
+import blog.yrol.util.SignalTracer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+/**
+ * Metrics - reviews.stream.subscribers (current subscribers of the reviews stream), the requests themselves are timed per route by the actuator (http.server.requests)
+ * **/
 @Component
 @Slf4j
-public class ReviewHandler {
+public class ReviewHandler implements MeterBinder {
 
-    @Autowired
-    private Validator validator;
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    /**
+     * Orders of the sorted reviews of a movie (getSortedReviews), ties broken by the most recent review
+     * **/
+    private static final Map<String, Sort> SORT_ORDERS = Map.of(
+            "rating", Sort.by(Sort.Direction.DESC, "rating", "reviewId"),
+            "latest", Sort.by(Sort.Direction.DESC, "reviewId"));
+
+    /**
+     * Listing all the reviews in one go (without limit) holds a Mongo cursor for as long as the whole collection takes to be written,
+     * hence it can be disabled in favour of the paged listing (getReviewsPage)
+     * **/
+    @Value("${reviews.listing.unbounded.enabled:true}")
+    private boolean unboundedListingEnabled;
+
+    @Value("${reviews.page.max-size:1000}")
+    private int maxPageSize;
 
     /**
      * Creating Sink for the event publisher
@@ -33,9 +68,29 @@ public class ReviewHandler {
 
     private final ReviewReactiveRepository reviewReactiveRepository;
 
-    public ReviewHandler(ReviewReactiveRepository reviewReactiveRepository) {
+    /**
+     * Tracing the signals of the sampled subscribers of the reviews stream (switched on at runtime, see SignalTracer)
+     * **/
+    private final SignalTracer signalTracer;
+
+    private final Validator validator;
+
+    /**
+     * The repository is injected lazily, since the handler is bound to the meter registry (MeterBinder) which the Mongo client depends on
+     * (Mongo connection pool metrics), ex: registry -> handler -> repository -> Mongo client -> registry
+     * **/
+    public ReviewHandler(@Lazy ReviewReactiveRepository reviewReactiveRepository, SignalTracer signalTracer, Validator validator) {
         this.reviewReactiveRepository = reviewReactiveRepository;
+        this.signalTracer = signalTracer;
+        this.validator = validator;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("reviews.stream.subscribers", reviewsSink, Sinks.Many::currentSubscriberCount)
+                .register(registry);
     }
+
     public Mono<ServerResponse> addReview(ServerRequest request) {
 
         /**
@@ -58,15 +113,177 @@ public class ReviewHandler {
     public Mono<ServerResponse> getReviews(ServerRequest request) {
 
         var movieInfoId = request.queryParam("movieInfoId");
+        var movieInfoIds = request.queryParams().get("movieInfoIds");
+
+        /**
+         * Getting the reviews of multiple movies at once, ex: /v1/reviews?movieInfoIds=1,2,3
+         * Supporting both comma separated and repeated query params
+         * Reviews refer to the movies by a numeric ID, hence any other ID is rejected
+         * **/
+        if (movieInfoIds != null && !movieInfoIds.isEmpty()) {
+            var ids = movieInfoIds.stream()
+                    .flatMap(value -> Arrays.stream(value.split(",")))
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .collect(Collectors.toSet());
+
+            if (ids.stream().anyMatch(id -> !id.matches("\\d{1,18}"))) {
+                return Mono.error(new ReviewDataException("movieInfoIds : must be numeric, ex: /v1/reviews?movieInfoIds=1,2"));
+            }
+
+            var reviewsFlux = reviewReactiveRepository.findReviewsByMovieInfoIdIn(ids.stream().map(Long::valueOf).collect(Collectors.toSet()));
+            return ServerResponse.ok().contentType(responseContentType(request)).body(reviewsFlux, Review.class);
+        }
 
         if(movieInfoId.isPresent()) {
+            if (request.queryParam("limit").isPresent() || request.queryParam("sort").isPresent()) {
+                return getSortedReviews(request, movieInfoId.get());
+            }
+
             var reviewsFlux = reviewReactiveRepository.findReviewsByMovieInfoId(movieInfoId.get())
                     .switchIfEmpty(Mono.empty());
-            return ServerResponse.ok().body(reviewsFlux, Review.class);
+            return ServerResponse.ok().contentType(responseContentType(request)).body(reviewsFlux, Review.class);
+        }
+
+        if (request.queryParam("limit").isPresent()) {
+            return getReviewsPage(request);
+        }
+
+        if (request.queryParam("cursor").isPresent() || !unboundedListingEnabled) {
+            return Mono.error(new ReviewDataException("limit : must be provided, ex: /v1/reviews?limit=100"));
         }
 
         var reviewsFlux = reviewReactiveRepository.findAll();
-        return ServerResponse.ok().body(reviewsFlux, Review.class);
+        return ServerResponse.ok().contentType(responseContentType(request)).body(reviewsFlux, Review.class);
+    }
+
+    /**
+     * Page of reviews, ex: /v1/reviews?limit=100 followed by /v1/reviews?limit=100&cursor={X-Next-Cursor}
+     * Keyset pagination - the reviews are ordered by ID, and the cursor is an opaque token pointing right after the last review of the previous page (see PageCursor).
+     * Hence, each page reads only its own reviews from the _id index, however deep into the collection it is (unlike skip).
+     * One more review than the limit is read, so that the last page comes without a next cursor (rather than being followed by an empty page)
+     * The next page is given as both the X-Next-Cursor and the Link (rel="next") headers
+     * **/
+    private Mono<ServerResponse> getReviewsPage(ServerRequest request) {
+        var limit = limit(request);
+
+        if (limit.isEmpty()) {
+            return Mono.error(new ReviewDataException(String.format("limit : must be between 1 and %s", maxPageSize)));
+        }
+
+        var pageSize = limit.get();
+        var pageable = PageRequest.of(0, pageSize + 1, Sort.by("reviewId"));
+
+        return Mono.defer(() -> {
+                    var cursor = request.queryParam("cursor");
+
+                    if (cursor.isEmpty()) {
+                        return reviewReactiveRepository.findAllBy(pageable).collectList();
+                    }
+
+                    // IDs that look like an ObjectId are stored as one (same conversion as Spring Data's)
+                    var afterId = PageCursor.decode(cursor.get());
+                    var reviewsFlux = ObjectId.isValid(afterId)
+                            ? reviewReactiveRepository.findByReviewIdGreaterThan(afterId, pageable)
+                            : reviewReactiveRepository.findAfterStringId(afterId, pageable);
+
+                    return reviewsFlux.collectList();
+                })
+                .flatMap(reviews -> {
+                    var response = ServerResponse.ok().contentType(responseContentType(request));
+
+                    if (reviews.size() <= pageSize) {
+                        return response.bodyValue(reviews);
+                    }
+
+                    var page = reviews.subList(0, pageSize);
+                    var nextCursor = PageCursor.encode(page.get(pageSize - 1).getReviewId());
+
+                    return response
+                            .header(PageCursor.NEXT_CURSOR_HEADER, nextCursor)
+                            .header(HttpHeaders.LINK, String.format("</v1/reviews?limit=%s&cursor=%s>; rel=\"next\"", pageSize, nextCursor))
+                            .bodyValue(page);
+                });
+    }
+
+    /**
+     * Top / sorted reviews of a movie, ex: /v1/reviews?movieInfoId=1&limit=5&sort=rating
+     * sort=rating - highest rated first, sort=latest (default) - most recent first (generated IDs grow with the insertion time)
+     * Both orders are backed by a compound index starting with movieInfoId (see Review), hence only the first "limit" reviews are read, already sorted
+     * Without limit, all the reviews of the movie are returned in the given order
+     * **/
+    private Mono<ServerResponse> getSortedReviews(ServerRequest request, String movieInfoId) {
+        var sortParam = request.queryParam("sort").orElse("latest");
+
+        if (!SORT_ORDERS.containsKey(sortParam)) {
+            return Mono.error(new ReviewDataException(String.format("sort : must be one of %s", String.join(", ", SORT_ORDERS.keySet()))));
+        }
+
+        var limit = limit(request);
+
+        if (request.queryParam("limit").isPresent() && limit.isEmpty()) {
+            return Mono.error(new ReviewDataException(String.format("limit : must be between 1 and %s", maxPageSize)));
+        }
+
+        // Reviews refer to the movies by a numeric ID, hence no reviews for any other ID (same as findReviewsByMovieInfoId)
+        if (!movieInfoId.matches("\\d{1,18}")) {
+            return ServerResponse.ok().contentType(responseContentType(request)).body(Flux.empty(), Review.class);
+        }
+
+        var sort = SORT_ORDERS.get(sortParam);
+        var reviewsFlux = limit.isPresent()
+                ? reviewReactiveRepository.findByMovieInfoId(Long.valueOf(movieInfoId), PageRequest.of(0, limit.get(), sort))
+                : reviewReactiveRepository.findByMovieInfoId(Long.valueOf(movieInfoId), sort);
+
+        return ServerResponse.ok().contentType(responseContentType(request)).body(reviewsFlux, Review.class);
+    }
+
+    private Optional<Integer> limit(ServerRequest request) {
+        return request.queryParam("limit")
+                .filter(value -> value.matches("\\d{1,9}"))
+                .map(Integer::valueOf)
+                .filter(value -> value >= 1 && value <= maxPageSize);
+    }
+
+    /**
+     * Rating summary of a movie (count, average, min / max and histogram), ex: /v1/reviews/summary?movieInfoId=1
+     * A movie without any rated reviews gets a summary with a count of 0 rather than 404 (same as getReviews returning no reviews),
+     * including a movie ID that isn't a number (or too long for one), since reviews can't refer to it
+     * **/
+    public Mono<ServerResponse> getReviewsSummary(ServerRequest request) {
+
+        var movieInfoId = request.queryParam("movieInfoId");
+
+        if (movieInfoId.isEmpty()) {
+            return Mono.error(new ReviewDataException("rating.movieInfoId : must not be null"));
+        }
+
+        var summaryMono = movieInfoId.get().matches("\\d{1,18}")
+                ? reviewReactiveRepository.summarizeReviewsByMovieInfoId(Long.valueOf(movieInfoId.get()))
+                : Mono.<ReviewSummary>empty();
+
+        return summaryMono
+                .defaultIfEmpty(ReviewSummary.empty())
+                .flatMap(summary -> ServerResponse.ok().contentType(responseContentType(request)).bodyValue(summary));
+    }
+
+    /**
+     * Answering in Smile (binary JSON) when the caller prefers it over JSON, ex: movies-service, otherwise in JSON
+     * Functional endpoints don't negotiate the content type on their own - the first writer able to write the body (JSON) would be picked
+     * **/
+    private MediaType responseContentType(ServerRequest request) {
+        var acceptedMediaTypes = new ArrayList<>(request.headers().accept());
+        MediaType.sortBySpecificityAndQuality(acceptedMediaTypes);
+
+        for (var mediaType : acceptedMediaTypes) {
+            if (mediaType.equalsTypeAndSubtype(APPLICATION_SMILE)) {
+                return APPLICATION_SMILE;
+            }
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
     }
 
     public Mono<ServerResponse> putReviews(ServerRequest serverRequest) {
@@ -102,7 +319,10 @@ public class ReviewHandler {
     }
 
 
-    private void validate(Review review) {
+    /**
+     * Package-private for the benchmarks (ReviewHandlerBenchmark in movies-review-service-benchmarks)
+     * **/
+    void validate(Review review) {
 
         var constraintViolations = validator.validate(review);
         log.info("constraintViolations : {}", constraintViolations);
@@ -129,7 +349,6 @@ public class ReviewHandler {
     public Mono<ServerResponse> getReviewsStream(ServerRequest serverRequest) {
         return ServerResponse.ok()
                 .contentType(MediaType.APPLICATION_NDJSON)
-                .body(reviewsSink.asFlux(), Review.class)
-                .log();
+                .body(signalTracer.trace("getReviewsStream", null, reviewsSink.asFlux()), Review.class);
     }
 }
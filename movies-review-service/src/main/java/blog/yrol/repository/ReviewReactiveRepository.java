@@ -1,11 +1,60 @@
 package blog.yrol.repository;
 
 import blog.yrol.domain.Review;
+import blog.yrol.domain.ReviewSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
 
 public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String> {
 
     // Using the automatic query builder for getting all reviews by movie ID
     Flux<Review> findReviewsByMovieInfoId(String movieInfoId);
+
+    /**
+     * Sorted (and optionally the first N) reviews of a movie, ex: the highest rated or the most recent ones
+     * Backed by the compound indexes of Review, hence the reviews are read in the index order and only as many as requested
+     * **/
+    Flux<Review> findByMovieInfoId(Long movieInfoId, Pageable pageable);
+
+    Flux<Review> findByMovieInfoId(Long movieInfoId, Sort sort);
+
+    /**
+     * Getting all reviews of multiple movies in a single query (movieInfoId $in)
+     * Numeric IDs, since the $in values aren't converted to the type of movieInfoId (unlike the equality of findReviewsByMovieInfoId)
+     * **/
+    Flux<Review> findReviewsByMovieInfoIdIn(Collection<Long> movieInfoIds);
+
+    /**
+     * Pages of reviews ordered by ID (reviewId is the _id, hence both the filter and the sort use the _id index)
+     * IDs are either generated (ObjectId) or given by the client (String), and Mongo orders all the Strings ahead of all the ObjectIds,
+     * while $gt only matches IDs of the same type. Hence, the page after a String ID also takes in the ObjectIds (findAfterStringId).
+     * **/
+    Flux<Review> findAllBy(Pageable pageable);
+
+    Flux<Review> findByReviewIdGreaterThan(String reviewId, Pageable pageable);
+
+    @Query("{ $or: [ { _id: { $gt: ?0 } }, { _id: { $type: 'objectId' } } ] }")
+    Flux<Review> findAfterStringId(String reviewId, Pageable pageable);
+
+    /**
+     * Summarizing the ratings of a movie within the database, hence only the summary leaves the database instead of all the reviews
+     * First group - count / total / min / max per whole rating (histogram buckets)
+     * Second group - the buckets rolled up into the summary of the movie
+     * Empty when the movie has no rated reviews
+     * **/
+    @Aggregation(pipeline = {
+            "{ $match: { movieInfoId: ?0, rating: { $ne: null } } }",
+            "{ $group: { _id: { $floor: '$rating' }, count: { $sum: 1 }, total: { $sum: '$rating' }, min: { $min: '$rating' }, max: { $max: '$rating' } } }",
+            "{ $sort: { _id: 1 } }",
+            "{ $group: { _id: null, count: { $sum: '$count' }, total: { $sum: '$total' }, min: { $min: '$min' }, max: { $max: '$max' }, histogram: { $push: { rating: '$_id', count: '$count' } } } }",
+            "{ $project: { _id: 0, count: 1, average: { $divide: ['$total', '$count'] }, min: 1, max: 1, histogram: 1 } }"
+    })
+    Mono<ReviewSummary> summarizeReviewsByMovieInfoId(Long movieInfoId);
 }
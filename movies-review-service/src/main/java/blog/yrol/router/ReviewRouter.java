@@ -25,6 +25,7 @@ public class ReviewRouter {
                 .nest(path("/v1/reviews"), builder ->
                         builder
                                 .GET("", reviewsHandler::getReviews)
+                                .GET("/summary", reviewsHandler::getReviewsSummary)
                                 .POST("", reviewsHandler::addReview)
                                 .PUT("/{id}", reviewsHandler::putReviews)
                                 .DELETE("/{id}", reviewsHandler::deleteReviews)
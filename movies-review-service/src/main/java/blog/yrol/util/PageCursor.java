@@ -0,0 +1,27 @@
+package blog.yrol.util;
+
+import blog.yrol.exception.ReviewDataException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token of the paged listing of the reviews (keyset pagination) - the ID of the last review of the previous page, Base64 (URL safe) encoded
+ * Clients are expected to pass the token back as it is, hence its format can change without breaking them.
+ * **/
+public class PageCursor {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static String encode(String lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new ReviewDataException("cursor : invalid cursor");
+        }
+    }
+}
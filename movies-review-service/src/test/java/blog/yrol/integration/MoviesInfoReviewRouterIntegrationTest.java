@@ -1,6 +1,7 @@
 package blog.yrol.integration;
 
 import blog.yrol.domain.Review;
+import blog.yrol.domain.ReviewSummary;
 import blog.yrol.repository.ReviewReactiveRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -100,6 +101,53 @@ public class MoviesInfoReviewRouterIntegrationTest {
                 .hasSize(2);
     }
 
+    @Test
+    void testReviewsByMovieIds_whenMultipleMovieIdsAreProvided_returnReviewsOfAllMovies() {
+        // Arrange
+        reviewReactiveRepository.save(new Review(null, 3L, "Awesome movie 3", 8.0)).block();
+
+        // Assert & act
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoIds=1,2")
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(3);
+    }
+
+    @Test
+    void testReviewsByMovieId_whenLimitAndSortByRatingProvided_returnTopRatedReviews() {
+        // Arrange
+        reviewReactiveRepository.save(new Review(null, 1L, "Masterpiece", 10.0)).block();
+
+        // Assert & act
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1&limit=2&sort=rating")
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(2)
+                .value(reviews -> assertEquals("Masterpiece", reviews.get(0).getComment()));
+    }
+
+    @Test
+    void testReviewsSummary_whenValidMovieIdIsProvided_returnSummaryAggregatedByTheDatabase() {
+        // Arrange
+        reviewReactiveRepository.save(new Review(null, 1L, "Good movie", 7.5)).block();
+
+        // Assert & act
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/summary?movieInfoId=1")
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBody(ReviewSummary.class)
+                .isEqualTo(new ReviewSummary(3L, 8.5, 7.5, 9.0,
+                        List.of(new ReviewSummary.RatingCount(7, 1L), new ReviewSummary.RatingCount(9, 2L))));
+    }
+
     @Test
     void testUpdateReview_whenProvidingValidInputs_returnUpdatedReview() {
 
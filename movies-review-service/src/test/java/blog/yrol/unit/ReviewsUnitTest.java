@@ -2,16 +2,25 @@ package blog.yrol.unit;
 
 
 import blog.yrol.domain.Review;
+import blog.yrol.domain.ReviewSummary;
 import blog.yrol.exception.ReviewNotFoundException;
 import blog.yrol.exceptionhandler.GlobalErrorHandler;
+import blog.yrol.filter.DeadlineWebFilter;
 import blog.yrol.handler.ReviewHandler;
 import blog.yrol.repository.ReviewReactiveRepository;
 import blog.yrol.router.ReviewRouter;
+import blog.yrol.util.PageCursor;
+import blog.yrol.util.SignalTracer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import static org.mockito.ArgumentMatchers.any;
@@ -21,16 +30,19 @@ import reactor.core.publisher.Mono;
 
 
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @WebFluxTest
 // using ContextConfiguration for injecting dependencies such as Router, Handler & etc beans instead of controller (as in MoviesInfoControllerUnitTest) since no controllers are involved
-@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, GlobalErrorHandler.class})
+@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, GlobalErrorHandler.class, DeadlineWebFilter.class, SignalTracer.class})
 @AutoConfigureWebTestClient
 public class ReviewsUnitTest {
 
@@ -183,6 +195,49 @@ public class ReviewsUnitTest {
                 .hasSize(2);
     }
 
+    @Test
+    void testGetReviews_whenSmilePreferred_returnReviewsInSmile() {
+
+        var reviews = List.of(
+                new Review("abc", 1L, "Awesome movie", 9.0),
+                new Review("def", 1L, "Fun to watch", 9.0)
+        );
+
+        // Arrange
+        when(reviewReactiveRepository.findReviewsByMovieInfoId((String) any()))
+                .thenReturn(Flux.fromIterable(reviews));
+
+        // Act & Assert (decoded by the Smile decoder of the WebTestClient)
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1")
+                .header(HttpHeaders.ACCEPT, "application/x-jackson-smile, application/json;q=0.9")
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().contentType(ReviewHandler.APPLICATION_SMILE)
+                .expectBodyList(Review.class)
+                .isEqualTo(reviews);
+    }
+
+    @Test
+    void testGetReviews_whenJsonPreferred_returnReviewsInJson() {
+
+        // Arrange
+        when(reviewReactiveRepository.findReviewsByMovieInfoId((String) any()))
+                .thenReturn(Flux.just(new Review("abc", 1L, "Awesome movie", 9.0)));
+
+        // Act & Assert
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1")
+                .header(HttpHeaders.ACCEPT, "*/*")
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBodyList(Review.class)
+                .hasSize(1);
+    }
+
     @Test
     void testGetReviews_whenInvalidMovieInfoIdProvided_returnAllMatchingReviews() {
 
@@ -202,6 +257,222 @@ public class ReviewsUnitTest {
                 .expectBodyList(String.class);
     }
 
+    @Test
+    void testGetReviews_whenMultipleMovieInfoIdsProvided_returnReviewsOfAllMovies() {
+
+        var reviews = List.of(
+                new Review("abc", 1L, "Awesome movie", 9.0),
+                new Review("def", 2L, "Fun to watch", 9.0)
+        );
+
+        // Arrange
+        when(reviewReactiveRepository.findReviewsByMovieInfoIdIn(Set.of(1L, 2L)))
+                .thenReturn(Flux.fromIterable(reviews));
+
+        // Act & Assert
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoIds=1,2")
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void testGetReviews_whenNonNumericMovieInfoIdsProvided_returnBadRequest() {
+
+        // Act & Assert
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoIds=1,abc")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verifyNoInteractions(reviewReactiveRepository);
+    }
+
+    @Test
+    void testGetReviews_whenLimitAndSortByRatingProvided_returnTopRatedReviews() {
+
+        var pageRequest = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "rating", "reviewId"));
+
+        // Arrange
+        when(reviewReactiveRepository.findByMovieInfoId(1L, pageRequest))
+                .thenReturn(Flux.just(new Review("a", 1L, "Awesome movie", 9.5), new Review("b", 1L, "Fun to watch", 8.0)));
+
+        // Act & Assert
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1&limit=2&sort=rating")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Review.class)
+                .hasSize(2)
+                .value(reviews -> assertEquals(9.5, reviews.get(0).getRating()));
+    }
+
+    @Test
+    void testGetReviews_whenUnknownSortProvided_returnBadRequest() {
+
+        // Act & Assert
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1&limit=2&sort=comment")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verifyNoInteractions(reviewReactiveRepository);
+    }
+
+    @Test
+    void testGetReviews_whenLimitProvided_returnPagesWithNextCursor() {
+
+        var reviews = List.of(
+                new Review("a", 1L, "Awesome movie", 9.0),
+                new Review("b", 1L, "Fun to watch", 8.0),
+                new Review("c", 2L, "Excellent movie", 9.5)
+        );
+
+        // Arrange - one more review than the limit is requested, for finding out whether there is a next page
+        when(reviewReactiveRepository.findAllBy(any()))
+                .thenReturn(Flux.fromIterable(reviews));
+        when(reviewReactiveRepository.findAfterStringId(eq("b"), any()))
+                .thenReturn(Flux.just(reviews.get(2)));
+
+        // Act & Assert
+        var nextCursor = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.LINK)
+                .expectBodyList(Review.class)
+                .hasSize(2)
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst(PageCursor.NEXT_CURSOR_HEADER);
+
+        // Last page comes without a next cursor
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?limit=2&cursor=" + nextCursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(PageCursor.NEXT_CURSOR_HEADER)
+                .expectBodyList(Review.class)
+                .contains(reviews.get(2))
+                .hasSize(1);
+    }
+
+    @Test
+    void testGetReviews_whenLimitIsOutOfRange_returnBadRequest() {
+
+        // Act & Assert
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?limit=0")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verifyNoInteractions(reviewReactiveRepository);
+    }
+
+    @Test
+    void testGetReviewsSummary_whenMovieInfoIdProvided_returnSummary() {
+
+        var summary = new ReviewSummary(3L, 8.5, 7.5, 9.0,
+                List.of(new ReviewSummary.RatingCount(7, 1L), new ReviewSummary.RatingCount(9, 2L)));
+
+        // Arrange
+        when(reviewReactiveRepository.summarizeReviewsByMovieInfoId(1L))
+                .thenReturn(Mono.just(summary));
+
+        // Act & Assert
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/summary?movieInfoId=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ReviewSummary.class)
+                .isEqualTo(summary);
+    }
+
+    @Test
+    void testGetReviewsSummary_whenMovieHasNoReviews_returnEmptySummary() {
+
+        // Arrange
+        when(reviewReactiveRepository.summarizeReviewsByMovieInfoId(2L))
+                .thenReturn(Mono.empty());
+
+        // Act & Assert
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/summary?movieInfoId=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ReviewSummary.class)
+                .isEqualTo(ReviewSummary.empty());
+    }
+
+    @Test
+    void testGetReviewsSummary_whenMovieInfoIdTooLong_returnEmptySummaryWithoutQuerying() {
+
+        // Act & Assert (too many digits for a movie ID, ex: beyond Long.MAX_VALUE)
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/summary?movieInfoId=99999999999999999999")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ReviewSummary.class)
+                .isEqualTo(ReviewSummary.empty());
+
+        verifyNoInteractions(reviewReactiveRepository);
+    }
+
+    @Test
+    void testGetReviewsSummary_whenMovieInfoIdMissing_returnBadRequest() {
+
+        // Act & Assert
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/summary")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verifyNoInteractions(reviewReactiveRepository);
+    }
+
+    @Test
+    void testGetReviews_whenDeadlineExpired_returnGatewayTimeoutWithoutQuerying() {
+
+        // Act & Assert
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1")
+                .header(DeadlineWebFilter.HEADER, "0")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+
+        verifyNoInteractions(reviewReactiveRepository);
+    }
+
+    @Test
+    void testGetReviews_whenQueryTakesLongerThanDeadline_returnGatewayTimeout() {
+
+        // Arrange
+        when(reviewReactiveRepository.findReviewsByMovieInfoId((String) any()))
+                .thenReturn(Flux.never());
+
+        // Act & Assert
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?movieInfoId=1")
+                .header(DeadlineWebFilter.HEADER, "100")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+    }
+
     @Test
     void testGetReviews_whenRequestingForAllAvailableReviews_returnAllReviews() {
         var reviews = List.of(
@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.context.annotation.ComponentScan;
 
 @SpringBootApplication
@@ -12,8 +13,14 @@ import org.springframework.context.annotation.ComponentScan;
 public class MovieServiceApplication implements CommandLineRunner {
     public static final Logger LOG = LoggerFactory.getLogger(MovieServiceApplication.class);
 
+    private static final int STARTUP_STEPS = 4096;
+
     public static void main(String[] args) {
-        SpringApplication.run(MovieServiceApplication.class, args);
+        var application = new SpringApplication(MovieServiceApplication.class);
+
+        // Recording the startup steps (timeline), see StartupConfig & /actuator/startup
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+        application.run(args);
     }
 
     @Override
@@ -0,0 +1,141 @@
+package blog.yrol.cache;
+
+import blog.yrol.domain.MovieInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process (near) cache of the movie info retrieved from the moviesInfo service
+ * Entries are evicted based on the size (max-size) and the age (ttl) of the entry.
+ * Entries are refreshed (or evicted, for the deleted movies) by the MovieInfoCacheInvalidator as changes arrive via the moviesInfo stream.
+ * A change arriving while the movie info is being loaded wins over the load - each refresh / invalidation bumps the generation of the movie,
+ * and the loaded movie info is cached only if the generation hasn't changed since the load started (otherwise it may predate the change).
+ * The generations are striped (movies sharing a stripe skip caching a load in flight during each other's changes), hence bounded in memory.
+ * Hit / miss / eviction counters are exposed as "cache.*" metrics with the tag cache=movieInfo
+ * **/
+@Component
+@Slf4j
+public class MovieInfoCache {
+
+    private static final String CACHE_NAME = "movieInfo";
+
+    // Power of 2, so that the stripe of a movie is picked with a mask
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final Cache<String, MovieInfo> cache;
+    private final Counter streamUpdatesCounter;
+    private final boolean enabled;
+
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    // Bumped by invalidateAll, on top of the generation of each movie
+    private final AtomicLong epoch = new AtomicLong();
+
+    public MovieInfoCache(@Value("${movies.cache.movie-info.enabled:true}") boolean enabled,
+                          @Value("${movies.cache.movie-info.max-size:10000}") long maxSize,
+                          @Value("${movies.cache.movie-info.ttl:PT5M}") Duration ttl,
+                          MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.streamUpdatesCounter = Counter.builder("cache.stream.updates")
+                .description("Number of cache entries refreshed by the movie info stream")
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returning the cached movie info, or loading it using the given loader (only successful lookups are cached)
+     * **/
+    public Mono<MovieInfo> get(String movieId, Function<String, Mono<MovieInfo>> loader) {
+        if (!enabled) {
+            return loader.apply(movieId);
+        }
+
+        return Mono.defer(() -> {
+            var movieInfo = cache.getIfPresent(movieId);
+            if (movieInfo != null) {
+                return Mono.just(movieInfo);
+            }
+
+            var generation = generation(movieId);
+
+            return loader.apply(movieId)
+                    .doOnNext(loadedMovieInfo -> cache.asMap().compute(movieId,
+                            (id, cached) -> generation(id) == generation ? loadedMovieInfo : cached));
+        });
+    }
+
+    /**
+     * Replacing an existing entry with the latest movie info
+     * Movies that haven't been requested yet are not added, so the stream doesn't fill the cache
+     * **/
+    public void refresh(MovieInfo movieInfo) {
+        if (movieInfo.getMovieInfoId() == null) {
+            return;
+        }
+
+        bumpGeneration(movieInfo.getMovieInfoId());
+
+        var refreshed = cache.asMap().computeIfPresent(movieInfo.getMovieInfoId(), (id, cached) -> movieInfo);
+        if (refreshed != null) {
+            log.debug("Movie info cache entry refreshed: {}", movieInfo.getMovieInfoId());
+            streamUpdatesCounter.increment();
+        }
+    }
+
+    /**
+     * Evicting the entry of a deleted movie, so that it isn't served for the rest of its ttl
+     * **/
+    public void invalidate(String movieId) {
+        if (movieId == null) {
+            return;
+        }
+
+        bumpGeneration(movieId);
+        cache.invalidate(movieId);
+        log.debug("Movie info cache entry invalidated: {}", movieId);
+    }
+
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Bumped before the entry is changed, so that a load completing in between sees the new generation
+     * **/
+    private void bumpGeneration(String movieId) {
+        generations.incrementAndGet(stripe(movieId));
+    }
+
+    // Both counters only grow, hence the sum changes whenever either of them is bumped
+    private long generation(String movieId) {
+        return epoch.get() + generations.get(stripe(movieId));
+    }
+
+    private static int stripe(String movieId) {
+        var hash = movieId.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+}
@@ -0,0 +1,83 @@
+package blog.yrol.cache;
+
+import blog.yrol.client.MoviesInfoRestClient;
+import lombok.extern.slf4j.Slf4j;
+import blog.yrol.domain.MovieInfo;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeping the MovieInfoCache up-to-date by subscribing to the moviesInfo event stream (/v1/moviesinfo/events)
+ * Each movie info received from the stream replaces the cached entry of the same movie, a deleted movie (tombstone) evicts it.
+ * The stream resumes from the last event seen after a reconnect (see MoviesInfoRestClient.retrieveMoviesInfoEvents), hence the whole
+ * cache is invalidated only when the sequence numbers show a gap, ex: the events have left the replay buffer or the moviesInfo service restarted.
+ * **/
+@Component
+@Slf4j
+public class MovieInfoCacheInvalidator {
+
+    private final MoviesInfoRestClient moviesInfoRestClient;
+    private final MovieInfoCache movieInfoCache;
+
+    private Disposable subscription;
+
+    public MovieInfoCacheInvalidator(MoviesInfoRestClient moviesInfoRestClient, MovieInfoCache movieInfoCache) {
+        this.moviesInfoRestClient = moviesInfoRestClient;
+        this.movieInfoCache = movieInfoCache;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        if (!movieInfoCache.isEnabled()) {
+            return;
+        }
+
+        var lastSequence = new AtomicLong();
+
+        subscription = moviesInfoRestClient.retrieveMoviesInfoEvents()
+                .doOnSubscribe(s -> log.info("Subscribing to the movie info stream for cache invalidation"))
+                .doOnNext(event -> refresh(event, lastSequence))
+                .subscribe();
+    }
+
+    private void refresh(ServerSentEvent<MovieInfo> event, AtomicLong lastSequence) {
+        var sequence = parseSequence(event.id());
+        var previous = lastSequence.getAndSet(sequence);
+
+        if (previous > 0 && sequence != previous + 1) {
+            log.info("Movie info events between {} and {} were missed, invalidating the movie info cache", previous, sequence);
+            movieInfoCache.invalidateAll();
+        }
+
+        if (MoviesInfoRestClient.MOVIE_INFO_DELETED_EVENT.equals(event.event())) {
+            movieInfoCache.invalidate(event.data().getMovieInfoId());
+            return;
+        }
+
+        movieInfoCache.refresh(event.data());
+    }
+
+    /**
+     * Events without a (numeric) ID can't be checked for gaps, returning 0 so that the next event isn't taken as a gap either
+     * **/
+    private long parseSequence(String id) {
+        try {
+            return id == null ? 0 : Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public void dispose() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package blog.yrol.cache;
+
+import blog.yrol.domain.Review;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Last known reviews of each movie, served (stale) by the degraded mode of MoviesController when the reviews service is slow or down
+ * It's a fallback rather than a cache in front of the reviews service - the entries are written on each successful lookup and only read on failures.
+ * Hit / miss / eviction counters are exposed as "cache.*" metrics with the tag cache=reviewList
+ * **/
+@Component
+public class ReviewListCache {
+
+    private static final String CACHE_NAME = "reviewList";
+
+    private final Cache<String, List<Review>> cache;
+
+    public ReviewListCache(@Value("${movies.reviews.degraded-mode.stale-cache.max-size:10000}") long maxSize,
+                           @Value("${movies.reviews.degraded-mode.stale-cache.ttl:PT1H}") Duration ttl,
+                           MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public void put(String movieId, List<Review> reviews) {
+        cache.put(movieId, reviews);
+    }
+
+    public Optional<List<Review>> get(String movieId) {
+        return Optional.ofNullable(cache.getIfPresent(movieId));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,54 @@
+package blog.yrol.cache;
+
+import blog.yrol.domain.Review;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Short-lived cache of the reviews joined to the enriched movie stream (/v1/movies/streams?enriched=true)
+ * A burst of events for the same movie (ex: several updates in a row) costs a single reviews lookup within the ttl.
+ * Hit / miss / eviction counters are exposed as "cache.*" metrics with the tag cache=streamReviews
+ * **/
+@Component
+public class StreamReviewsCache {
+
+    private static final String CACHE_NAME = "streamReviews";
+
+    private final Cache<String, List<Review>> cache;
+
+    public StreamReviewsCache(@Value("${movies.streams.enriched.reviews-cache.max-size:1000}") long maxSize,
+                              @Value("${movies.streams.enriched.reviews-cache.ttl:PT5S}") Duration ttl,
+                              MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returning the cached reviews, or loading them using the given loader (only successful lookups are cached)
+     * **/
+    public Mono<List<Review>> get(String movieId, Function<String, Mono<List<Review>>> loader) {
+        return Mono.defer(() -> {
+            var reviews = cache.getIfPresent(movieId);
+            if (reviews != null) {
+                return Mono.just(reviews);
+            }
+
+            return loader.apply(movieId)
+                    .doOnNext(loadedReviews -> cache.put(movieId, loadedReviews));
+        });
+    }
+}
@@ -1,22 +1,36 @@
 package blog.yrol.client;
 
-import blog.yrol.domain.Movie;
+import blog.yrol.cache.MovieInfoCache;
 import blog.yrol.domain.MovieInfo;
 import blog.yrol.exception.MoviesInfoClientException;
 import blog.yrol.exception.MoviesInfoServerException;
+import blog.yrol.util.CircuitBreaker;
+import blog.yrol.util.RetryPolicy;
 import blog.yrol.util.RetryUtil;
+import blog.yrol.util.SignalTracer;
+import blog.yrol.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Custom WebClient config for consuming moviesInfo service endpoints
@@ -25,16 +39,53 @@ import java.time.Duration;
 @Slf4j
 public class MoviesInfoRestClient {
 
+    // Event type of a deleted movie (tombstone) in the movie info event stream
+    public static final String MOVIE_INFO_DELETED_EVENT = "movieInfoDeleted";
+
     private WebClient webClient;
 
+    private MovieInfoCache movieInfoCache;
+
+    private RetryPolicy retryPolicy;
+
+    private CircuitBreaker circuitBreaker;
+
+    private SignalTracer signalTracer;
+
+    // Coalescing concurrent movie info calls of the same movie ID into a single call
+    private SingleFlight<String, MovieInfo> movieInfoRequests;
+
     @Value("${rest.client.moviesInfoUrl}")
     private String moviesInfoUrl;
 
-    public MoviesInfoRestClient(WebClient webClient) {
+    @Value("${rest.client.movies-info.stream.min-backoff:PT0.5S}")
+    private Duration streamMinBackoff;
+
+    @Value("${rest.client.movies-info.stream.max-backoff:PT30S}")
+    private Duration streamMaxBackoff;
+
+    public MoviesInfoRestClient(WebClient webClient, MovieInfoCache movieInfoCache,
+                                @Qualifier("moviesInfoRetryPolicy") RetryPolicy retryPolicy,
+                                @Qualifier("moviesInfoCircuitBreaker") CircuitBreaker circuitBreaker,
+                                SignalTracer signalTracer, MeterRegistry meterRegistry) {
         this.webClient = webClient;
+        this.movieInfoCache = movieInfoCache;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+        this.signalTracer = signalTracer;
+        this.movieInfoRequests = new SingleFlight<>("moviesInfo", meterRegistry);
     }
 
+    /**
+     * Retrieving the movie info from the near cache (MovieInfoCache) and calling the moviesInfo service only on a cache miss
+     * Concurrent cache misses of the same movie share one in-flight call
+     * **/
     public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
+        return signalTracer.trace("retrieveMovieInfo", movieId,
+                movieInfoCache.get(movieId, id -> movieInfoRequests.mono(id, () -> fetchMovieInfo(id))));
+    }
+
+    private Mono<MovieInfo> fetchMovieInfo(String movieId) {
         var url = moviesInfoUrl.concat("/{id}");
 
 
@@ -85,60 +136,116 @@ public class MoviesInfoRestClient {
                 .bodyToMono(MovieInfo.class)
                 .onErrorMap(WebClientRequestException.class, ex -> new MoviesInfoServerException(String.format("Web Client exception MovieInfoService: %s", ex.getMessage())))
 //                .retry(3)
-                .retryWhen(RetryUtil.retrySpec())
-                .log();
+                .retryWhen(RetryUtil.retrySpec(retryPolicy))
+                .transform(circuitBreaker::protect);
     }
 
     /**
-     * Retrieving stream of movie info
+     * Retrieving multiple movie info in a single call
+     * Ex: http://localhost:8080/v1/moviesinfo?ids=1,2,3
      * **/
-    public Flux<MovieInfo> retrieveMoviesInfoStream() {
+    public Flux<MovieInfo> retrieveMoviesInfo(List<String> movieIds) {
 
-        var moviesUrl = moviesInfoUrl.concat("/streams");
+        var url = UriComponentsBuilder.fromHttpUrl(moviesInfoUrl)
+                .queryParam("ids", String.join(",", movieIds))
+                .buildAndExpand().toUriString();
 
         return webClient
                 .get()
-                .uri(moviesUrl)
+                .uri(url)
                 .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, this::handleClientError)
+                .onStatus(HttpStatus::is5xxServerError, this::handleServerError)
+                .bodyToFlux(MovieInfo.class)
+                .onErrorMap(WebClientRequestException.class, ex -> new MoviesInfoServerException(String.format("Web Client exception MovieInfoService: %s", ex.getMessage())))
+                .retryWhen(RetryUtil.retrySpec(retryPolicy))
+                .transform(circuitBreaker::protect);
+    }
 
-                // Handling 4xx errors (only if returned / emitted by the moviesInfo service)
-                .onStatus(HttpStatus::is4xxClientError, (clientResponse -> {
-
-                    log.info("Movies Info Rest status code: {}", clientResponse.statusCode().value());
-
-
-                    var errorReason = clientResponse.statusCode().getReasonPhrase();
-
-                    // Handling default 4xx errors
-                    return clientResponse.bodyToMono(String.class)
-                            .switchIfEmpty(Mono.error(new MoviesInfoClientException(String.format("Server Exception in MoviesInfoService: %s", errorReason), clientResponse.statusCode().value())))
-                            .flatMap(responseMessage -> Mono.error(new MoviesInfoClientException(
-                                    responseMessage, clientResponse.statusCode().value()
-                            )));
-                }))
-
+    /**
+     * Retrieving stream of movie info (see retrieveMoviesInfoEvents), without the deleted movies
+     * **/
+    public Flux<MovieInfo> retrieveMoviesInfoStream() {
+        return signalTracer.trace("retrieveMoviesInfoStream", null, retrieveMoviesInfoEvents()
+                .filter(event -> !MOVIE_INFO_DELETED_EVENT.equals(event.event()))
+                .map(ServerSentEvent::data));
+    }
 
-                // Handling 5xx errors (only if returned / emitted by the moviesInfo service)
-                .onStatus(HttpStatus::is5xxServerError, (clientResponse -> {
-                    log.info("Movies Info Rest status code: {}", clientResponse.statusCode().value());
+    /**
+     * Retrieving stream of movie info events (Server-Sent Events with the sequence number of each event as the ID)
+     * A deleted movie comes as a MOVIE_INFO_DELETED_EVENT, with the ID of the movie only
+     * The stream is resumed whenever the connection fails or is closed by the moviesInfo service - reconnecting with an
+     * exponential backoff (rest.client.movies-info.stream.*) and the last event ID seen, so that the events published meanwhile are replayed.
+     * The backoff starts over once an event is received again.
+     * Not protected by the circuit breaker since it's a long lived call (outcome / duration of a call is meaningless)
+     * **/
+    public Flux<ServerSentEvent<MovieInfo>> retrieveMoviesInfoEvents() {
+
+        var eventsUrl = moviesInfoUrl.concat("/events");
+
+        return Flux.defer(() -> {
+            var lastEventId = new AtomicReference<String>();
+
+            return Flux.defer(() -> webClient
+                            .get()
+                            .uri(eventsUrl)
+                            .accept(MediaType.TEXT_EVENT_STREAM)
+                            .headers(headers -> {
+                                if (lastEventId.get() != null) {
+                                    headers.set("Last-Event-ID", lastEventId.get());
+                                }
+                            })
+                            .retrieve()
+                            .onStatus(HttpStatus::is4xxClientError, this::handleClientError)
+                            .onStatus(HttpStatus::is5xxServerError, this::handleServerError)
+                            .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<MovieInfo>>() {}))
+                    .filter(event -> event.data() != null)
+                    .doOnNext(event -> {
+                        if (event.id() != null) {
+                            lastEventId.set(event.id());
+                        }
+                    })
+                    .onErrorMap(WebClientRequestException.class, ex -> new MoviesInfoServerException(String.format("Web Client exception MovieInfoService: %s", ex.getMessage())))
+
+                    // Treating a stream closed by the server as a failure, so that it's resumed the same way
+                    .concatWith(Flux.error(() -> new MoviesInfoServerException("Server Exception in MoviesInfoService: movie info stream closed")))
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, streamMinBackoff)
+                            .maxBackoff(streamMaxBackoff)
+                            .transientErrors(true)
+                            .doBeforeRetry(retrySignal -> log.info("Resuming the movie info stream after event {}: {}",
+                                    Objects.toString(lastEventId.get(), "-"), retrySignal.failure().getMessage())));
+        });
+    }
 
+    /**
+     * Handling 4xx errors (only if returned / emitted by the moviesInfo service)
+     * **/
+    private Mono<? extends Throwable> handleClientError(ClientResponse clientResponse) {
+        log.info("Movies Info Rest status code: {}", clientResponse.statusCode().value());
 
-                    var errorReason = clientResponse.statusCode().getReasonPhrase();
+        var errorReason = clientResponse.statusCode().getReasonPhrase();
 
+        // Handling default 4xx errors
+        return clientResponse.bodyToMono(String.class)
+                .switchIfEmpty(Mono.error(new MoviesInfoClientException(String.format("Server Exception in MoviesInfoService: %s", errorReason), clientResponse.statusCode().value())))
+                .flatMap(responseMessage -> Mono.error(new MoviesInfoClientException(
+                        responseMessage, clientResponse.statusCode().value()
+                )));
+    }
 
-                    // Handling default 5xx errors
-                    return clientResponse.bodyToMono(String.class)
-                            .switchIfEmpty(Mono.error(new MoviesInfoServerException(String.format("Server Exception in MoviesInfoService: %s", errorReason))))
-                            .flatMap(responseMessage -> Mono.error(new MoviesInfoServerException(
-                                    String.format("Server Exception in MoviesInfoService: %s", responseMessage)
+    /**
+     * Handling 5xx errors (only if returned / emitted by the moviesInfo service)
+     * **/
+    private Mono<? extends Throwable> handleServerError(ClientResponse clientResponse) {
+        log.info("Movies Info Rest status code: {}", clientResponse.statusCode().value());
 
-                            )));
+        var errorReason = clientResponse.statusCode().getReasonPhrase();
 
-                }))
-                .bodyToFlux(MovieInfo.class)
-                .onErrorMap(WebClientRequestException.class, ex -> new MoviesInfoServerException(String.format("Web Client exception MovieInfoService: %s", ex.getMessage())))
-//                .retry(3)
-                .retryWhen(RetryUtil.retrySpec())
-                .log();
+        // Handling default 5xx errors
+        return clientResponse.bodyToMono(String.class)
+                .switchIfEmpty(Mono.error(new MoviesInfoServerException(String.format("Server Exception in MoviesInfoService: %s", errorReason))))
+                .flatMap(responseMessage -> Mono.error(new MoviesInfoServerException(
+                        String.format("Server Exception in MoviesInfoService: %s", responseMessage)
+                )));
     }
 }
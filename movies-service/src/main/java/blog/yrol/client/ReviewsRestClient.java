@@ -1,21 +1,32 @@
 package blog.yrol.client;
 
 import blog.yrol.domain.Review;
+import blog.yrol.domain.ReviewSummary;
 import blog.yrol.exception.MoviesInfoClientException;
 import blog.yrol.exception.MoviesInfoServerException;
 import blog.yrol.exception.ReviewsClientException;
 import blog.yrol.exception.ReviewsServerException;
+import blog.yrol.util.CircuitBreaker;
+import blog.yrol.util.Hedger;
+import blog.yrol.util.RetryPolicy;
 import blog.yrol.util.RetryUtil;
+import blog.yrol.util.SignalTracer;
+import blog.yrol.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Custom WebClient config for consuming moviesReview service endpoints
@@ -26,24 +37,64 @@ public class ReviewsRestClient {
 
     private WebClient webClient;
 
+    private RetryPolicy retryPolicy;
+
+    private CircuitBreaker circuitBreaker;
+
+    private Hedger hedger;
+
+    private SignalTracer signalTracer;
+
+    // Coalescing concurrent review calls of the same movie ID into a single call
+    private SingleFlight<String, Review> reviewRequests;
+
     @Value("${rest.client.reviewsUrl}")
     private String reviewsUrl;
 
-    public ReviewsRestClient(WebClient webClient) {
+    public ReviewsRestClient(WebClient webClient, @Qualifier("reviewsRetryPolicy") RetryPolicy retryPolicy,
+                             @Qualifier("reviewsCircuitBreaker") CircuitBreaker circuitBreaker,
+                             @Qualifier("reviewsHedger") Hedger hedger, SignalTracer signalTracer, MeterRegistry meterRegistry) {
         this.webClient = webClient;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+        this.hedger = hedger;
+        this.signalTracer = signalTracer;
+        this.reviewRequests = new SingleFlight<>("reviews", meterRegistry);
     }
 
+    /**
+     * Retrieving the reviews of a movie
+     * Concurrent calls for the same movie share one in-flight call
+     * Each attempt is hedged (see Hedger) - a slow attempt is raced against an identical one
+     * **/
     public Flux<Review> retrieveReviews(String movieId) {
+        return retrieveReviews(movieId, null, null);
+    }
+
+    /**
+     * Retrieving the top reviews of a movie, ex: the 5 highest rated (limit=5, sort=rating) or the 5 most recent (limit=5, sort=latest)
+     * Sorted and limited by the moviesReview service using its indexes, hence only the requested reviews are read and sent over
+     * A null limit / sort leaves it to the moviesReview service (all the reviews / most recent first)
+     * **/
+    public Flux<Review> retrieveReviews(String movieId, Integer limit, String sort) {
 
         /**
          * Constructing the Url using UriComponentsBuilder/
-         * Ex: http://localhost:8888/v1/reviews?movieInfoId=2
+         * Ex: http://localhost:8888/v1/reviews?movieInfoId=2 or http://localhost:8888/v1/reviews?movieInfoId=2&limit=5&sort=rating
          * **/
         var url = UriComponentsBuilder.fromHttpUrl(reviewsUrl)
                 .queryParam("movieInfoId", movieId)
+                .queryParamIfPresent("limit", Optional.ofNullable(limit))
+                .queryParamIfPresent("sort", Optional.ofNullable(sort))
                 .buildAndExpand().toUriString();
 
-        return webClient
+        // Calls are shared by the exact same query only (the URL), ex: the top 5 reviews of a movie don't share the call for all its reviews
+        return signalTracer.trace("retrieveReviews", movieId, reviewRequests.flux(url, () -> fetchReviews(url)));
+    }
+
+    private Flux<Review> fetchReviews(String url) {
+
+        return hedger.hedge(() -> webClient
                 .get()
                 .uri(url)
                 .retrieve()
@@ -78,7 +129,109 @@ public class ReviewsRestClient {
                 }))
                 .bodyToFlux(Review.class)
                 .onErrorMap(WebClientRequestException.class, ex -> new ReviewsServerException(String.format("Web Client exception MoviesReviewService: %s", ex.getMessage())))
-                .retryWhen(RetryUtil.retrySpec())
-                .log();
+                .collectList())
+                .flatMapIterable(reviews -> reviews)
+                .retryWhen(RetryUtil.retrySpec(retryPolicy))
+                .transform(circuitBreaker::protect);
+    }
+
+    /**
+     * Streaming the reviews of a movie as they are decoded from the response, ex: for movies with a large number of reviews
+     * Unlike retrieveReviews, the calls aren't coalesced nor hedged, since both would hold on to all the reviews of the movie.
+     * Only the call up to the response status (toEntityFlux) is retried and recorded by the circuit breaker - a retry
+     * after some of the reviews have been streamed would repeat them.
+     * **/
+    public Flux<Review> streamReviews(String movieId) {
+
+        var url = UriComponentsBuilder.fromHttpUrl(reviewsUrl)
+                .queryParam("movieInfoId", movieId)
+                .buildAndExpand().toUriString();
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, this::handleClientError)
+                .onStatus(HttpStatus::is5xxServerError, this::handleServerError)
+                .toEntityFlux(Review.class)
+                .onErrorMap(WebClientRequestException.class, ex -> new ReviewsServerException(String.format("Web Client exception MoviesReviewService: %s", ex.getMessage())))
+                .retryWhen(RetryUtil.retrySpec(retryPolicy))
+                .transform(circuitBreaker::protect)
+                .flatMapMany(responseEntity -> responseEntity.getBody() != null ? responseEntity.getBody() : Flux.empty());
+    }
+
+    /**
+     * Retrieving the rating summary of a movie (count, average, min / max and histogram) instead of all its reviews
+     * Ex: http://localhost:8888/v1/reviews/summary?movieInfoId=1
+     * **/
+    public Mono<ReviewSummary> retrieveReviewSummary(String movieId) {
+
+        var url = UriComponentsBuilder.fromHttpUrl(reviewsUrl)
+                .path("/summary")
+                .queryParam("movieInfoId", movieId)
+                .buildAndExpand().toUriString();
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, this::handleClientError)
+                .onStatus(HttpStatus::is5xxServerError, this::handleServerError)
+                .bodyToMono(ReviewSummary.class)
+                .onErrorMap(WebClientRequestException.class, ex -> new ReviewsServerException(String.format("Web Client exception MoviesReviewService: %s", ex.getMessage())))
+                .retryWhen(RetryUtil.retrySpec(retryPolicy))
+                .transform(circuitBreaker::protect);
+    }
+
+    /**
+     * Retrieving the reviews of multiple movies in a single call
+     * Ex: http://localhost:8888/v1/reviews?movieInfoIds=1,2,3
+     * **/
+    public Flux<Review> retrieveReviewsForMovies(List<String> movieIds) {
+
+        var url = UriComponentsBuilder.fromHttpUrl(reviewsUrl)
+                .queryParam("movieInfoIds", String.join(",", movieIds))
+                .buildAndExpand().toUriString();
+
+        return webClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, this::handleClientError)
+                .onStatus(HttpStatus::is5xxServerError, this::handleServerError)
+                .bodyToFlux(Review.class)
+                .onErrorMap(WebClientRequestException.class, ex -> new ReviewsServerException(String.format("Web Client exception MoviesReviewService: %s", ex.getMessage())))
+                .retryWhen(RetryUtil.retrySpec(retryPolicy))
+                .transform(circuitBreaker::protect);
+    }
+
+    /**
+     * Handling 4xx errors (only if returned / emitted by the moviesReview service)
+     * 404 is a valid response (where movies may not consist of any reviews), hence returning empty
+     * **/
+    private Mono<? extends Throwable> handleClientError(ClientResponse clientResponse) {
+        if (clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
+            return Mono.empty();
+        }
+
+        var errorReason = clientResponse.statusCode().getReasonPhrase();
+
+        return clientResponse.bodyToMono(String.class)
+                .switchIfEmpty(Mono.error(new ReviewsClientException(String.format("Server Exception in MoviesReviewService: %s", errorReason), clientResponse.statusCode().value())))
+                .flatMap(responseMessage -> Mono.error(new ReviewsClientException(
+                        responseMessage, clientResponse.statusCode().value())));
+    }
+
+    /**
+     * Handling 5xx errors (only if returned / emitted by the moviesReview service)
+     * **/
+    private Mono<? extends Throwable> handleServerError(ClientResponse clientResponse) {
+        var errorReason = clientResponse.statusCode().getReasonPhrase();
+
+        return clientResponse.bodyToMono(String.class)
+                .switchIfEmpty(Mono.error(new ReviewsServerException(String.format("Server Exception in MoviesReviewService: %s", errorReason))))
+                .flatMap(responseMessage -> Mono.error(new ReviewsServerException(
+                        String.format("Server Exception in MoviesReviewService: %s", responseMessage)
+                )));
     }
 }
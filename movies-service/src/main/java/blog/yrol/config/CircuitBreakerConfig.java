@@ -0,0 +1,71 @@
+package blog.yrol.config;
+
+import blog.yrol.exception.MoviesInfoServerException;
+import blog.yrol.exception.ReviewsServerException;
+import blog.yrol.util.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Circuit breakers of the downstream services
+ * Only the server errors (5xx / connection errors) are recorded as failures and the open circuit fails fast with the same server exception.
+ * **/
+@Configuration
+public class CircuitBreakerConfig {
+
+    @Bean
+    public CircuitBreaker moviesInfoCircuitBreaker(@Value("${rest.client.movies-info.circuit-breaker.window:PT10S}") Duration window,
+                                                   @Value("${rest.client.movies-info.circuit-breaker.buckets:10}") int buckets,
+                                                   @Value("${rest.client.movies-info.circuit-breaker.minimum-calls:20}") int minimumCalls,
+                                                   @Value("${rest.client.movies-info.circuit-breaker.failure-rate-threshold:50}") double failureRateThreshold,
+                                                   @Value("${rest.client.movies-info.circuit-breaker.slow-call-rate-threshold:100}") double slowCallRateThreshold,
+                                                   @Value("${rest.client.movies-info.circuit-breaker.slow-call-duration:PT2S}") Duration slowCallDuration,
+                                                   @Value("${rest.client.movies-info.circuit-breaker.open-duration:PT10S}") Duration openDuration,
+                                                   @Value("${rest.client.movies-info.circuit-breaker.half-open-calls:3}") int halfOpenCalls,
+                                                   MeterRegistry meterRegistry) {
+        return CircuitBreaker.builder()
+                .name("moviesInfo")
+                .window(window)
+                .buckets(buckets)
+                .minimumCalls(minimumCalls)
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .slowCallDuration(slowCallDuration)
+                .openDuration(openDuration)
+                .halfOpenCalls(halfOpenCalls)
+                .recordFailure(ex -> ex instanceof MoviesInfoServerException)
+                .openError(() -> new MoviesInfoServerException("Server Exception in MoviesInfoService: circuit breaker is open"))
+                .meterRegistry(meterRegistry)
+                .build();
+    }
+
+    @Bean
+    public CircuitBreaker reviewsCircuitBreaker(@Value("${rest.client.reviews.circuit-breaker.window:PT10S}") Duration window,
+                                                @Value("${rest.client.reviews.circuit-breaker.buckets:10}") int buckets,
+                                                @Value("${rest.client.reviews.circuit-breaker.minimum-calls:20}") int minimumCalls,
+                                                @Value("${rest.client.reviews.circuit-breaker.failure-rate-threshold:50}") double failureRateThreshold,
+                                                @Value("${rest.client.reviews.circuit-breaker.slow-call-rate-threshold:100}") double slowCallRateThreshold,
+                                                @Value("${rest.client.reviews.circuit-breaker.slow-call-duration:PT2S}") Duration slowCallDuration,
+                                                @Value("${rest.client.reviews.circuit-breaker.open-duration:PT10S}") Duration openDuration,
+                                                @Value("${rest.client.reviews.circuit-breaker.half-open-calls:3}") int halfOpenCalls,
+                                                MeterRegistry meterRegistry) {
+        return CircuitBreaker.builder()
+                .name("reviews")
+                .window(window)
+                .buckets(buckets)
+                .minimumCalls(minimumCalls)
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .slowCallDuration(slowCallDuration)
+                .openDuration(openDuration)
+                .halfOpenCalls(halfOpenCalls)
+                .recordFailure(ex -> ex instanceof ReviewsServerException)
+                .openError(() -> new ReviewsServerException("Server Exception in MoviesReviewService: circuit breaker is open"))
+                .meterRegistry(meterRegistry)
+                .build();
+    }
+}
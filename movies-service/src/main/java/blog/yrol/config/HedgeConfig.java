@@ -0,0 +1,32 @@
+package blog.yrol.config;
+
+import blog.yrol.util.Hedger;
+import blog.yrol.util.LatencyTracker;
+import blog.yrol.util.RequestBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Hedged requests of the reviews lookups (ReviewsRestClient.retrieveReviews)
+ * **/
+@Configuration
+public class HedgeConfig {
+
+    @Bean
+    public Hedger reviewsHedger(@Value("${rest.client.reviews.hedge.enabled:true}") boolean enabled,
+                                @Value("${rest.client.reviews.hedge.percentile:95}") double percentile,
+                                @Value("${rest.client.reviews.hedge.min-delay:PT0.02S}") Duration minDelay,
+                                @Value("${rest.client.reviews.hedge.initial-delay:PT0.2S}") Duration initialDelay,
+                                @Value("${rest.client.reviews.hedge.window-size:1024}") int windowSize,
+                                @Value("${rest.client.reviews.hedge.budget.ratio:0.1}") double budgetRatio,
+                                @Value("${rest.client.reviews.hedge.budget.max-tokens:10}") int budgetMaxTokens,
+                                MeterRegistry meterRegistry) {
+        return new Hedger("reviews", enabled, minDelay, initialDelay,
+                new LatencyTracker(windowSize, percentile, 64),
+                new RequestBudget(budgetRatio, budgetMaxTokens), meterRegistry);
+    }
+}
@@ -0,0 +1,38 @@
+package blog.yrol.config;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.reactive.client.DefaultWebClientExchangeTagsProvider;
+import org.springframework.boot.actuate.metrics.web.reactive.client.WebClientExchangeTagsProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tags of the calls to the movies info and reviews services (http.client.requests)
+ * uri - the URI template without the query string, since the IDs sent as query params (ex: /v1/reviews?movieInfoId=1) would create a time series per movie
+ * client.name - host and port of the downstream service, since the services may share a host (ex: localhost)
+ * The other tags (method, status, outcome) are the default ones.
+ * **/
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public WebClientExchangeTagsProvider webClientExchangeTagsProvider() {
+        var defaultTagsProvider = new DefaultWebClientExchangeTagsProvider();
+
+        return (request, response, throwable) -> {
+            var tags = Tags.of(defaultTagsProvider.tags(request, response, throwable));
+            var uri = tags.stream()
+                    .filter(tag -> tag.getKey().equals("uri"))
+                    .map(Tag::getValue)
+                    .findFirst()
+                    .orElse("none");
+
+            var queryIndex = uri.indexOf('?');
+
+            return tags
+                    .and("uri", queryIndex >= 0 ? uri.substring(0, queryIndex) : uri)
+                    .and("client.name", request.url().getAuthority());
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package blog.yrol.config;
+
+import blog.yrol.util.RequestBudget;
+import blog.yrol.util.RetryPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Retry policies of the downstream services (used by RetryUtil)
+ * Each downstream service has its own backoff settings and its own retry budget.
+ * **/
+@Configuration
+public class RetryConfig {
+
+    @Bean
+    public RetryPolicy moviesInfoRetryPolicy(@Value("${rest.client.movies-info.retry.max-retries:3}") long maxRetries,
+                                             @Value("${rest.client.movies-info.retry.min-backoff:PT0.1S}") Duration minBackoff,
+                                             @Value("${rest.client.movies-info.retry.max-backoff:PT2S}") Duration maxBackoff,
+                                             @Value("${rest.client.movies-info.retry.budget.ratio:0.2}") double budgetRatio,
+                                             @Value("${rest.client.movies-info.retry.budget.max-tokens:10}") int budgetMaxTokens,
+                                             MeterRegistry meterRegistry) {
+        return new RetryPolicy("moviesInfo", maxRetries, minBackoff, maxBackoff,
+                new RequestBudget(budgetRatio, budgetMaxTokens), meterRegistry);
+    }
+
+    @Bean
+    public RetryPolicy reviewsRetryPolicy(@Value("${rest.client.reviews.retry.max-retries:3}") long maxRetries,
+                                          @Value("${rest.client.reviews.retry.min-backoff:PT0.1S}") Duration minBackoff,
+                                          @Value("${rest.client.reviews.retry.max-backoff:PT2S}") Duration maxBackoff,
+                                          @Value("${rest.client.reviews.retry.budget.ratio:0.2}") double budgetRatio,
+                                          @Value("${rest.client.reviews.retry.budget.max-tokens:10}") int budgetMaxTokens,
+                                          MeterRegistry meterRegistry) {
+        return new RetryPolicy("reviews", maxRetries, minBackoff, maxBackoff,
+                new RequestBudget(budgetRatio, budgetMaxTokens), meterRegistry);
+    }
+}
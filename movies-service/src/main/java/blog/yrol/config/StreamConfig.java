@@ -0,0 +1,27 @@
+package blog.yrol.config;
+
+import blog.yrol.client.MoviesInfoRestClient;
+import blog.yrol.domain.MovieInfo;
+import blog.yrol.util.FanOut;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Sharing one movie info stream connection (MoviesInfoRestClient.retrieveMoviesInfoStream) across all the subscribers of /v1/movies/streams
+ * **/
+@Configuration
+public class StreamConfig {
+
+    @Bean
+    public FanOut<MovieInfo> movieInfoFanOut(MoviesInfoRestClient moviesInfoRestClient,
+                                             @Value("${movies.streams.fanout.buffer-size:256}") int bufferSize,
+                                             @Value("${movies.streams.fanout.overflow:drop-oldest}") FanOut.OverflowPolicy overflowPolicy,
+                                             @Value("${movies.streams.fanout.grace-period:PT5S}") Duration gracePeriod,
+                                             MeterRegistry meterRegistry) {
+        return new FanOut<>("moviesInfo", moviesInfoRestClient.retrieveMoviesInfoStream(), bufferSize, overflowPolicy, gracePeriod, meterRegistry);
+    }
+}
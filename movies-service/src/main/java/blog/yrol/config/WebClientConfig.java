@@ -1,18 +1,108 @@
 package blog.yrol.config;
 
+import blog.yrol.util.DeadlineExchangeFilter;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 /**
  * Configuration class for webclient
+ * The webclient is backed by a dedicated (and bounded) Reactor Netty connection pool for the calls to the moviesInfo and moviesReview services.
+ * The pool settings are applied per remote host, ex: each downstream service gets up to max-connections connections.
+ * Each call propagates the request deadline (DeadlineExchangeFilter) and fails when the connection or the response takes too long.
+ * The responses are requested in Smile (binary JSON) with JSON as the fallback, the codecs are registered by WebFlux whenever jackson-dataformat-smile is on the classpath.
  * **/
 
 @Configuration
 public class WebClientConfig {
 
+    public static final String SMILE_PREFERRED = "application/x-jackson-smile, application/json;q=0.9";
+
+    // Maximum number of connections per downstream service
+    @Value("${rest.client.pool.max-connections:500}")
+    private int maxConnections;
+
+    // Maximum number of requests waiting for a connection, requests beyond that are rejected straight away
+    @Value("${rest.client.pool.pending-acquire-max-count:1000}")
+    private int pendingAcquireMaxCount;
+
+    // Maximum time to wait for a connection
+    @Value("${rest.client.pool.pending-acquire-timeout:PT5S}")
+    private Duration pendingAcquireTimeout;
+
+    // Closing connections that have been idle for longer than this
+    @Value("${rest.client.pool.max-idle-time:PT30S}")
+    private Duration maxIdleTime;
+
+    // Closing connections that have been open for longer than this (ex: for picking up new downstream instances)
+    @Value("${rest.client.pool.max-life-time:PT5M}")
+    private Duration maxLifeTime;
+
+    // Interval of the background eviction of idle / expired connections
+    @Value("${rest.client.pool.evict-in-background:PT30S}")
+    private Duration evictInBackground;
+
+    // Using cleartext HTTP/2 (h2c, prior knowledge) for multiplexing the requests over fewer connections
+    @Value("${rest.client.h2c.enabled:false}")
+    private boolean h2cEnabled;
+
+    // Maximum time to establish a connection
+    @Value("${rest.client.connect-timeout:PT2S}")
+    private Duration connectTimeout;
+
+    // Maximum time between the reads of a response (capped at the remaining time of the request deadline)
+    @Value("${rest.client.response-timeout:PT5S}")
+    private Duration responseTimeout;
+
+    // Preferring Smile over JSON for the downstream responses (calls setting their own Accept header, ex: the SSE stream, are left as they are)
+    @Value("${rest.client.smile.enabled:true}")
+    private boolean smileEnabled;
+
+    /**
+     * metrics(true) exposes the pool gauges, ex: reactor.netty.connection.provider.active.connections / idle.connections / pending.connections
+     * **/
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider connectionProvider() {
+        return ConnectionProvider.builder("movies-service")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInBackground)
+                .metrics(true)
+                .build();
+    }
+
     @Bean
-    public WebClient webClient(WebClient.Builder builder) {
+    public WebClient webClient(WebClient.Builder builder, ConnectionProvider connectionProvider) {
+        builder.clientConnector(new ReactorClientHttpConnector(httpClient(connectionProvider, h2cEnabled, connectTimeout)))
+                .filter(new DeadlineExchangeFilter(responseTimeout));
+
+        if (smileEnabled) {
+            builder.defaultHeader(HttpHeaders.ACCEPT, SMILE_PREFERRED);
+        }
+
         return builder.build();
     }
+
+    public static HttpClient httpClient(ConnectionProvider connectionProvider, boolean h2cEnabled, Duration connectTimeout) {
+        var httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis());
+
+        if (h2cEnabled) {
+            return httpClient.protocol(HttpProtocol.H2C);
+        }
+
+        return httpClient.protocol(HttpProtocol.HTTP11);
+    }
 }
@@ -1,23 +1,56 @@
 package blog.yrol.controller;
 
+import blog.yrol.cache.ReviewListCache;
+import blog.yrol.cache.StreamReviewsCache;
 import blog.yrol.client.MoviesInfoRestClient;
 import blog.yrol.client.ReviewsRestClient;
 import blog.yrol.domain.Movie;
 import blog.yrol.domain.MovieInfo;
+import blog.yrol.domain.MovieStreamElement;
+import blog.yrol.domain.Review;
+import blog.yrol.domain.ReviewSummary;
+import blog.yrol.exception.DeadlineExceededException;
+import blog.yrol.exception.ReviewsServerException;
+import blog.yrol.util.Deadline;
+import blog.yrol.util.FanOut;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
 @RestController
 @RequestMapping("/v1/movies")
+@Slf4j
 public class MoviesController {
 
+    public static final String PARTIAL_RESPONSE_HEADER = "X-Partial-Response";
+
+    // Orders of the top reviews of a movie (reviewSort), see ReviewsRestClient.retrieveReviews
+    private static final Set<String> REVIEW_SORT_ORDERS = Set.of("rating", "latest");
+
     /**
      * Using Non-blocking spring boot webclient
      * This webclient will be used for calling external services in a non-blocking fashion
@@ -28,34 +61,297 @@ public class MoviesController {
 
     private MoviesInfoRestClient moviesInfoRestClient;
     private ReviewsRestClient reviewsRestClient;
+    private ReviewListCache reviewListCache;
+    private StreamReviewsCache streamReviewsCache;
+    private MeterRegistry meterRegistry;
+
+    // Movie info stream shared by all the stream subscribers (one upstream connection, see StreamConfig)
+    private FanOut<MovieInfo> movieInfoFanOut;
+
+    /**
+     * Composition mode for retrieveMovieById
+     * parallel - movie info and reviews are requested at the same time
+     * sequential - reviews are requested only after the movie info has been retrieved
+     * **/
+    @Value("${movies.aggregation.mode:parallel}")
+    private String aggregationMode;
+
+    @Value("${movies.batch.max-size:200}")
+    private int batchMaxSize;
+
+    /**
+     * Deadline of a request (see Deadline) - shared by all the downstream calls and retries of the request
+     * **/
+    @Value("${movies.request.timeout:PT5S}")
+    private Duration requestTimeout;
 
-    public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient) {
+    /**
+     * Degraded mode (opt-in) - when the reviews miss the latency budget or fail, the movie is returned with the last known (stale) reviews or no reviews,
+     * marked as partial with the X-Partial-Response header (ex: "reviews=stale" or "reviews=empty")
+     * **/
+    @Value("${movies.reviews.degraded-mode.enabled:false}")
+    private boolean degradedModeEnabled;
+
+    @Value("${movies.reviews.degraded-mode.latency-budget:PT0.3S}")
+    private Duration reviewsLatencyBudget;
+
+    // Maximum number of concurrent reviews lookups of the enriched movie stream
+    @Value("${movies.streams.enriched.concurrency:8}")
+    private int enrichedStreamConcurrency;
+
+    @Value("${movies.streams.enriched.reviews-timeout:PT2S}")
+    private Duration enrichedStreamReviewsTimeout;
+
+    public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient,
+                            ReviewListCache reviewListCache, StreamReviewsCache streamReviewsCache, MeterRegistry meterRegistry,
+                            FanOut<MovieInfo> movieInfoFanOut) {
         this.moviesInfoRestClient = moviesInfoRestClient;
         this.reviewsRestClient = reviewsRestClient;
+        this.reviewListCache = reviewListCache;
+        this.streamReviewsCache = streamReviewsCache;
+        this.meterRegistry = meterRegistry;
+        this.movieInfoFanOut = movieInfoFanOut;
     }
 
+    /**
+     * Fetch a movie with its reviews, or only its top reviews, ex: /v1/movies/{id}?reviewLimit=5&reviewSort=rating
+     * reviewSort - rating (highest rated first) or latest (most recent first)
+     * **/
     @GetMapping("/{id}")
-    public Mono<Movie> retrieveMovieById(@PathVariable("id") String movieId) {
-
-        /**
-         * Fetch movies and reviews
-         * Calling moviesInfoRestClient.retrieveMovieInfo and reviewsRestClient.retrieveReviews (only if retrieveMovieInfo exist) in order
-         * Using flatMap to convert reactive type Mono returned by retrieveMovieInfo.
-         * Using collectList to convert reactive type Flux to a List (since Movie -> reviewList is a type List)
-         * **/
-        return moviesInfoRestClient.retrieveMovieInfo(movieId)
+    public Mono<Movie> retrieveMovieById(@PathVariable("id") String movieId,
+                                         @RequestParam(value = "reviewLimit", required = false) Integer reviewLimit,
+                                         @RequestParam(value = "reviewSort", required = false) String reviewSort,
+                                         ServerHttpResponse response) {
+
+        if (reviewSort != null && !REVIEW_SORT_ORDERS.contains(reviewSort)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("reviewSort must be one of %s", String.join(", ", REVIEW_SORT_ORDERS))));
+        }
+
+        var reviewsQuery = new ReviewsQuery(movieId, reviewLimit, reviewSort);
+
+        if ("sequential".equalsIgnoreCase(aggregationMode)) {
+            return Deadline.within(retrieveMovieSequentially(reviewsQuery, response), requestTimeout);
+        }
+
+        return Deadline.within(retrieveMovieInParallel(reviewsQuery, response), requestTimeout);
+    }
+
+    /**
+     * Movie streamed as NDJSON, ex: /v1/movies/{id}?view=stream
+     * The movie info is written as soon as it's retrieved, followed by a line per review as the reviews are decoded from the reviews response.
+     * Hence, the memory of a request stays the same and the first bytes go out before any review has been read, no matter how many reviews the movie has.
+     * The request deadline covers the movie info only, since the time to stream all the reviews depends on their number.
+     * **/
+    @GetMapping(value = "/{id}", params = "view=stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieStreamElement> retrieveMovieStreamById(@PathVariable("id") String movieId) {
+
+        return Deadline.within(moviesInfoRestClient.retrieveMovieInfo(movieId), requestTimeout)
+                .flatMapMany(movieInfo -> Flux.concat(
+                        Mono.just(MovieStreamElement.of(movieInfo)),
+                        reviewsRestClient.streamReviews(movieId).map(MovieStreamElement::of)));
+    }
+
+    /**
+     * Movie with the rating summary of its reviews instead of the reviews, ex: /v1/movies/{id}?view=summary
+     * The summary is computed by the moviesReview service, hence the response size stays the same no matter how many reviews the movie has.
+     * Both calls are made concurrently, with the movie info error (ex: 404) ahead of any reviews error - same as retrieveMovieInParallel.
+     * **/
+    @GetMapping(value = "/{id}", params = "view=summary")
+    public Mono<Movie> retrieveMovieSummaryById(@PathVariable("id") String movieId) {
+        var movieInfoMono = moviesInfoRestClient.retrieveMovieInfo(movieId);
+
+        // A movie without reviews (404) gets an empty summary
+        var reviewSummaryMono = reviewsRestClient.retrieveReviewSummary(movieId)
+                .defaultIfEmpty(new ReviewSummary(0L, null, null, null, List.of()));
+
+        return Deadline.within(zipAfterMovieInfo(movieInfoMono, reviewSummaryMono, Movie::withSummary), requestTimeout);
+    }
+
+    /**
+     * Fetch movies and reviews
+     * Calling moviesInfoRestClient.retrieveMovieInfo and reviewsRestClient.retrieveReviews (only if retrieveMovieInfo exist) in order
+     * Using flatMap to convert reactive type Mono returned by retrieveMovieInfo.
+     * Using collectList to convert reactive type Flux to a List (since Movie -> reviewList is a type List)
+     * **/
+    private Mono<Movie> retrieveMovieSequentially(ReviewsQuery reviewsQuery, ServerHttpResponse response) {
+        return moviesInfoRestClient.retrieveMovieInfo(reviewsQuery.movieId)
                 .flatMap(movieInfo -> {
-                  var reviewListMono = reviewsRestClient.retrieveReviews(movieId)
-                          .collectList();
+                  var reviewListMono = retrieveReviewList(reviewsQuery, response);
 
                     return reviewListMono.map(reviews -> new Movie(movieInfo, reviews));
                 });
     }
 
+    /**
+     * Fetch movies and reviews concurrently
+     * Mono.zip subscribes to both calls at once and cancels the other call as soon as one of them fails or completes empty,
+     * ex: the reviews call is cancelled when movie info returns 404 (MoviesInfoClientException).
+     * A reviews failure waits for the movie info outcome (see zipAfterMovieInfo), which keeps the movie info error (ex: 404) ahead of any reviews error - same as the sequential mode.
+     * **/
+    private Mono<Movie> retrieveMovieInParallel(ReviewsQuery reviewsQuery, ServerHttpResponse response) {
+        var movieInfoMono = moviesInfoRestClient.retrieveMovieInfo(reviewsQuery.movieId);
+        var reviewListMono = retrieveReviewList(reviewsQuery, response);
+
+        return zipAfterMovieInfo(movieInfoMono, reviewListMono, Movie::new);
+    }
+
+    /**
+     * Zipping the movie info with the reviews, the reviews outcome (materialized) being held until the movie info has been retrieved
+     * Hence a reviews error is propagated only after the movie info succeeded, while a movie info error cancels the reviews call right away.
+     * Both calls are subscribed once, so a deadline or a client disconnecting cancels them (and the circuit breakers record it).
+     * **/
+    private <R> Mono<Movie> zipAfterMovieInfo(Mono<MovieInfo> movieInfoMono, Mono<R> reviewsMono, BiFunction<MovieInfo, R, Movie> combinator) {
+        return Mono.zip(movieInfoMono, reviewsMono.materialize())
+                .flatMap(tuple -> Mono.just(tuple.getT2())
+                        .<R>dematerialize()
+                        .map(reviews -> combinator.apply(tuple.getT1(), reviews)));
+    }
+
+    /**
+     * Reviews of a movie, degraded (if enabled) to the stale or empty reviews when the reviews service is slow (latency budget) or down (5xx / circuit open)
+     * The timeout cancels the reviews call, hence a slow reviews service can't hold the response beyond the latency budget.
+     * Client errors (4xx) aren't degraded, since retrying / waiting wouldn't change them.
+     * The stale reviews are kept per query, ex: the stale top 5 reviews of a movie aren't served in place of all its reviews.
+     * **/
+    private Mono<List<Review>> retrieveReviewList(ReviewsQuery reviewsQuery, ServerHttpResponse response) {
+        var reviewListMono = reviewsRestClient.retrieveReviews(reviewsQuery.movieId, reviewsQuery.limit, reviewsQuery.sort).collectList();
+
+        if (!degradedModeEnabled) {
+            return reviewListMono;
+        }
+
+        var cacheKey = reviewsQuery.cacheKey();
+
+        return reviewListMono
+                .doOnNext(reviews -> reviewListCache.put(cacheKey, reviews))
+                .timeout(reviewsLatencyBudget)
+                .onErrorResume(this::isDegradable, ex -> Mono.fromSupplier(() -> degradedReviewList(reviewsQuery.movieId, cacheKey, ex, response)));
+    }
+
+    private boolean isDegradable(Throwable ex) {
+        return ex instanceof TimeoutException || ex instanceof ReviewsServerException || ex instanceof DeadlineExceededException;
+    }
+
+    /**
+     * Counting the partial responses as movies.responses.partial, tagged with the reason (timeout / error) and the source of the reviews (stale / empty)
+     * **/
+    private List<Review> degradedReviewList(String movieId, String cacheKey, Throwable ex, ServerHttpResponse response) {
+        var reason = ex instanceof TimeoutException ? "timeout" : "error";
+        var staleReviews = reviewListCache.get(cacheKey);
+        var source = staleReviews.isPresent() ? "stale" : "empty";
+
+        log.warn("Returning {} reviews of the movie {} due to reviews {}: {}", source, movieId, reason, ex.getMessage());
+
+        response.getHeaders().set(PARTIAL_RESPONSE_HEADER, "reviews=" + source);
+        Counter.builder("movies.responses.partial")
+                .tag("reason", reason)
+                .tag("source", source)
+                .register(meterRegistry)
+                .increment();
+
+        return staleReviews.orElseGet(List::of);
+    }
+
+    /**
+     * Fetch multiple movies with their reviews, ex: /v1/movies?ids=1,2,3 (streamed as NDJSON)
+     * The whole batch costs two downstream calls - one for the movie info and one for the reviews of all the movies.
+     * Reviews are grouped by the movie ID (collectMultimap) and joined with each movie info.
+     * Movies that don't exist are omitted from the response.
+     * **/
+    @GetMapping(params = "ids", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Movie> retrieveMoviesByIds(@RequestParam("ids") List<String> movieIds) {
+
+        var distinctMovieIds = movieIds.stream()
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+
+        if (distinctMovieIds.isEmpty() || distinctMovieIds.size() > batchMaxSize) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Number of movie IDs must be between 1 and %s", batchMaxSize)));
+        }
+
+        var movieInfoListMono = moviesInfoRestClient.retrieveMoviesInfo(distinctMovieIds)
+                .collectList();
+
+        // Reviews refer to the movies by a numeric ID (the reviews service rejects any other), hence the other movies have no reviews to look up
+        var reviewedMovieIds = distinctMovieIds.stream()
+                .filter(id -> id.matches("\\d{1,18}"))
+                .collect(Collectors.toList());
+
+        var reviewsByMovieIdMono = reviewedMovieIds.isEmpty()
+                ? Mono.just(Map.<String, Collection<Review>>of())
+                : reviewsRestClient.retrieveReviewsForMovies(reviewedMovieIds)
+                        .collectMultimap(review -> String.valueOf(review.getMovieInfoId()));
+
+        return Deadline.within(Mono.zip(movieInfoListMono, reviewsByMovieIdMono), requestTimeout)
+                .flatMapMany(tuple -> Flux.fromIterable(tuple.getT1())
+                        .map(movieInfo -> new Movie(movieInfo,
+                                new ArrayList<>(tuple.getT2().getOrDefault(movieInfo.getMovieInfoId(), List.of())))));
+    }
+
+    /**
+     * Stream of movie info, ex: /v1/movies/streams (streamed as NDJSON)
+     * All the subscribers share one connection to the moviesInfo service, a subscriber falling behind loses the oldest movies
+     * or gets disconnected depending on movies.streams.fanout.overflow (see FanOut)
+     * **/
     @GetMapping(value = "/streams", produces = MediaType.APPLICATION_NDJSON_VALUE)
     public Flux<MovieInfo> retrieveMoviesInfo() {
 
-        return moviesInfoRestClient.retrieveMoviesInfoStream();
+        return movieInfoFanOut.subscribe();
+    }
+
+    /**
+     * Stream of movies with their reviews, ex: /v1/movies/streams?enriched=true (streamed as NDJSON)
+     * flatMapSequential looks up the reviews of up to enrichedStreamConcurrency movies at a time while emitting the movies in the order they arrived.
+     * A burst of movies waits for a free slot in the buffer of the subscriber (see FanOut) instead of flooding the reviews service.
+     * Reviews are cached for a short time (StreamReviewsCache), and a failed or slow lookup emits the movie without reviews rather than ending the stream.
+     * **/
+    @GetMapping(value = "/streams", params = "enriched=true", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Movie> retrieveEnrichedMoviesStream() {
+
+        return movieInfoFanOut.subscribe()
+                .flatMapSequential(movieInfo -> streamReviewsCache.get(movieInfo.getMovieInfoId(), this::retrieveStreamReviewList)
+                                .onErrorResume(ex -> {
+                                    log.warn("Streaming the movie {} without reviews: {}", movieInfo.getMovieInfoId(), ex.getMessage());
+                                    Counter.builder("movies.streams.enrichment.failures")
+                                            .register(meterRegistry)
+                                            .increment();
+                                    return Mono.just(List.of());
+                                })
+                                .map(reviews -> new Movie(movieInfo, reviews)),
+                        enrichedStreamConcurrency, 1);
+    }
+
+    private Mono<List<Review>> retrieveStreamReviewList(String movieId) {
+        return reviewsRestClient.retrieveReviews(movieId)
+                .collectList()
+                .timeout(enrichedStreamReviewsTimeout);
     }
 
+    /**
+     * Reviews of a movie requested along with the movie - all of them, or only the top ones (limit / sort)
+     * **/
+    private static final class ReviewsQuery {
+
+        private final String movieId;
+        private final Integer limit;
+        private final String sort;
+
+        private ReviewsQuery(String movieId, Integer limit, String sort) {
+            this.movieId = movieId;
+            this.limit = limit;
+            this.sort = sort;
+        }
+
+        private String cacheKey() {
+            if (limit == null && sort == null) {
+                return movieId;
+            }
+
+            return String.format("%s?limit=%s&sort=%s", movieId, limit, sort);
+        }
+    }
 }
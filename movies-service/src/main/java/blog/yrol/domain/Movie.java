@@ -1,16 +1,30 @@
 package blog.yrol.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
 
+/**
+ * A movie with either all its reviews (reviewList) or only the summary of its reviews (reviewSummary, /v1/movies/{id}?view=summary)
+ * **/
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Movie {
 
     private MovieInfo movieInfo;
     private List<Review> reviewList;
+    private ReviewSummary reviewSummary;
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList) {
+        this(movieInfo, reviewList, null);
+    }
+
+    public static Movie withSummary(MovieInfo movieInfo, ReviewSummary reviewSummary) {
+        return new Movie(movieInfo, null, reviewSummary);
+    }
 }
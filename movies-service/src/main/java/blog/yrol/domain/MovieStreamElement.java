@@ -0,0 +1,27 @@
+package blog.yrol.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A line of the streamed movie (/v1/movies/{id}?view=stream) - the movie info (first line) or one of its reviews
+ * **/
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MovieStreamElement {
+
+    private MovieInfo movieInfo;
+    private Review review;
+
+    public static MovieStreamElement of(MovieInfo movieInfo) {
+        return new MovieStreamElement(movieInfo, null);
+    }
+
+    public static MovieStreamElement of(Review review) {
+        return new MovieStreamElement(null, review);
+    }
+}
@@ -0,0 +1,31 @@
+package blog.yrol.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Rating summary of the reviews of a movie, as computed by the moviesReview service (/v1/reviews/summary)
+ * histogram - number of reviews per whole rating, ex: a rating of 8.5 counts towards 8
+ * **/
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewSummary {
+
+    private Long count;
+    private Double average;
+    private Double min;
+    private Double max;
+    private List<RatingCount> histogram;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RatingCount {
+        private Integer rating;
+        private Long count;
+    }
+}
@@ -0,0 +1,12 @@
+package blog.yrol.exception;
+
+public class DeadlineExceededException extends RuntimeException {
+
+    private String message;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+        this.message = message;
+    }
+
+}
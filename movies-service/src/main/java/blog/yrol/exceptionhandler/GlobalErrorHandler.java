@@ -1,12 +1,14 @@
 package blog.yrol.exceptionhandler;
 
 
+import blog.yrol.exception.DeadlineExceededException;
 import blog.yrol.exception.MoviesInfoClientException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ResponseStatusException;
 
 @ControllerAdvice
 @Slf4j
@@ -21,6 +23,20 @@ public class GlobalErrorHandler {
         return ResponseEntity.status(exception.getStatusCode()).body(exception.getMessage());
     }
 
+    // Handling ResponseStatusException type exceptions (ex: invalid request parameters) with their own status code
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<String> handleResponseStatusException(ResponseStatusException exception) {
+        log.error("Exception caught in handleResponseStatusException: {}", exception.getMessage());
+        return ResponseEntity.status(exception.getStatus()).body(exception.getReason());
+    }
+
+    // Handling DeadlineExceededException - the request deadline expired before the downstream services answered
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<String> handleDeadlineExceededException(DeadlineExceededException exception) {
+        log.error("Exception caught in handleDeadlineExceededException: {}", exception.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(exception.getMessage());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleRuntimeException(RuntimeException exception) {
         log.error("Exception caught in handleClientException: {}", exception.getMessage());
@@ -0,0 +1,287 @@
+package blog.yrol.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free circuit breaker of a downstream service (ex: moviesInfo, reviews)
+ * CLOSED - calls are permitted and their outcomes are recorded in a time based sliding window (split into buckets).
+ * Once the window has at least minimumCalls, the circuit opens when the failure rate or the slow call rate reaches its threshold.
+ * OPEN - calls fail fast with the error given by openError, without calling the downstream service.
+ * HALF_OPEN - after openDuration, halfOpenCalls probe calls are permitted.
+ * The circuit closes when all the probes succeed and opens again as soon as a probe fails (or is slow).
+ * Only the errors matching recordFailure are failures (ex: 5xx / connection errors), 4xx errors mean the downstream service is healthy.
+ * A cancelled call (ex: cut off by the request deadline or a timeout) is recorded as slow once it ran for slowCallDuration and as failed otherwise,
+ * hence a hung downstream service opens the circuit even though none of its calls ever completes.
+ * **/
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final Predicate<Throwable> recordFailure;
+    private final Supplier<? extends RuntimeException> openError;
+
+    // Sliding window - each bucket holds its epoch (index of the bucket since the start) and its counters
+    private final int buckets;
+    private final long bucketNanos;
+    private final AtomicLongArray bucketEpochs;
+    private final AtomicLongArray bucketCalls;
+    private final AtomicLongArray bucketFailures;
+    private final AtomicLongArray bucketSlowCalls;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicLong openedAt = new AtomicLong();
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+
+    private final Counter notPermittedCounter;
+
+    /**
+     * Registering the metrics with the given name as the "client" tag
+     * movies.client.circuit.state - 1 for the current state (tagged with the state), 0 for the rest
+     * movies.client.circuit.failure.rate / movies.client.circuit.slow.call.rate - rates (percentage) of the sliding window
+     * movies.client.circuit.not.permitted - number of calls rejected while the circuit is open
+     * **/
+    @Builder
+    private CircuitBreaker(String name, Duration window, int buckets, int minimumCalls,
+                           double failureRateThreshold, double slowCallRateThreshold, Duration slowCallDuration,
+                           Duration openDuration, int halfOpenCalls,
+                           Predicate<Throwable> recordFailure, Supplier<? extends RuntimeException> openError,
+                           MeterRegistry meterRegistry) {
+        this.name = name;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.recordFailure = recordFailure;
+        this.openError = openError;
+
+        this.buckets = buckets;
+        this.bucketNanos = window.toNanos() / buckets;
+        this.bucketEpochs = new AtomicLongArray(buckets);
+        this.bucketCalls = new AtomicLongArray(buckets);
+        this.bucketFailures = new AtomicLongArray(buckets);
+        this.bucketSlowCalls = new AtomicLongArray(buckets);
+
+        for (State value : State.values()) {
+            Gauge.builder("movies.client.circuit.state", state, current -> current.get() == value ? 1 : 0)
+                    .tag("client", name)
+                    .tag("state", value.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+
+        Gauge.builder("movies.client.circuit.failure.rate", this, breaker -> breaker.rate(breaker.bucketFailures))
+                .tag("client", name)
+                .register(meterRegistry);
+
+        Gauge.builder("movies.client.circuit.slow.call.rate", this, breaker -> breaker.rate(breaker.bucketSlowCalls))
+                .tag("client", name)
+                .register(meterRegistry);
+
+        this.notPermittedCounter = Counter.builder("movies.client.circuit.not.permitted")
+                .tag("client", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Protecting a call (subscription) to the downstream service
+     * **/
+    public <T> Mono<T> protect(Mono<T> call) {
+        return Mono.defer(() -> {
+            if (!tryAcquirePermission()) {
+                return Mono.error(openError.get());
+            }
+
+            var start = System.nanoTime();
+            return call
+                    .doOnSuccess(value -> onResult(start, null))
+                    .doOnError(ex -> onResult(start, ex))
+                    .doOnCancel(() -> onCancel(start));
+        });
+    }
+
+    public <T> Flux<T> protect(Flux<T> call) {
+        return Flux.defer(() -> {
+            if (!tryAcquirePermission()) {
+                return Flux.error(openError.get());
+            }
+
+            var start = System.nanoTime();
+            return call
+                    .doOnComplete(() -> onResult(start, null))
+                    .doOnError(ex -> onResult(start, ex))
+                    .doOnCancel(() -> onCancel(start));
+        });
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Closing the circuit and clearing the sliding window
+     * **/
+    public void reset() {
+        state.set(State.CLOSED);
+        clearWindow();
+    }
+
+    private boolean tryAcquirePermission() {
+        while (true) {
+            var current = state.get();
+
+            if (current == State.CLOSED) {
+                return true;
+            }
+
+            if (current == State.OPEN) {
+                if (System.nanoTime() - openedAt.get() < openNanos) {
+                    notPermittedCounter.increment();
+                    return false;
+                }
+
+                // Open duration elapsed - only one of the racing calls moves the circuit to HALF_OPEN and hands out the probe permits
+                if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                    halfOpenSuccesses.set(0);
+                    halfOpenPermits.set(halfOpenCalls);
+                    log.info("Circuit breaker of {} is half open", name);
+                }
+                continue;
+            }
+
+            // HALF_OPEN - permitting only the probe calls
+            var permits = halfOpenPermits.get();
+            if (permits <= 0) {
+                notPermittedCounter.increment();
+                return false;
+            }
+            if (halfOpenPermits.compareAndSet(permits, permits - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void onResult(long start, Throwable ex) {
+        var failed = ex != null && recordFailure.test(ex);
+        var slow = System.nanoTime() - start >= slowCallNanos;
+
+        onOutcome(failed, slow);
+    }
+
+    /**
+     * A cancelled call has no outcome - the caller gave up on it, hence it's slow (ran for slowCallDuration) or failed
+     * **/
+    private void onCancel(long start) {
+        var slow = System.nanoTime() - start >= slowCallNanos;
+
+        onOutcome(!slow, slow);
+    }
+
+    private void onOutcome(boolean failed, boolean slow) {
+        if (state.get() == State.HALF_OPEN) {
+            if (failed || slow) {
+                transitionToOpen(State.HALF_OPEN);
+            } else if (halfOpenSuccesses.incrementAndGet() >= halfOpenCalls && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                clearWindow();
+                log.info("Circuit breaker of {} is closed", name);
+            }
+            return;
+        }
+
+        record(failed, slow);
+
+        if (state.get() == State.CLOSED) {
+            var calls = total(bucketCalls);
+            if (calls >= minimumCalls
+                    && (rate(bucketFailures) >= failureRateThreshold || rate(bucketSlowCalls) >= slowCallRateThreshold)) {
+                transitionToOpen(State.CLOSED);
+            }
+        }
+    }
+
+    private void transitionToOpen(State from) {
+        openedAt.set(System.nanoTime());
+        halfOpenPermits.set(0);
+        if (state.compareAndSet(from, State.OPEN)) {
+            log.warn("Circuit breaker of {} is open (failure rate: {}%, slow call rate: {}%)", name, rate(bucketFailures), rate(bucketSlowCalls));
+        }
+    }
+
+    /**
+     * Recording the outcome in the bucket of the current time
+     * The first call of a new epoch claims (CAS) and clears the bucket - a concurrent call may still land in the stale counters, which is tolerable for rates
+     * **/
+    private void record(boolean failed, boolean slow) {
+        var epoch = System.nanoTime() / bucketNanos;
+        var index = (int) Math.floorMod(epoch, (long) buckets);
+
+        var bucketEpoch = bucketEpochs.get(index);
+        if (bucketEpoch != epoch && bucketEpochs.compareAndSet(index, bucketEpoch, epoch)) {
+            bucketCalls.set(index, 0);
+            bucketFailures.set(index, 0);
+            bucketSlowCalls.set(index, 0);
+        }
+
+        bucketCalls.incrementAndGet(index);
+        if (failed) {
+            bucketFailures.incrementAndGet(index);
+        }
+        if (slow) {
+            bucketSlowCalls.incrementAndGet(index);
+        }
+    }
+
+    private void clearWindow() {
+        for (int i = 0; i < buckets; i++) {
+            bucketEpochs.set(i, 0);
+            bucketCalls.set(i, 0);
+            bucketFailures.set(i, 0);
+            bucketSlowCalls.set(i, 0);
+        }
+    }
+
+    /**
+     * Sum of the given counters within the sliding window (skipping the buckets of the past epochs)
+     * **/
+    private long total(AtomicLongArray counters) {
+        var oldestEpoch = System.nanoTime() / bucketNanos - buckets + 1;
+        var total = 0L;
+
+        for (int i = 0; i < buckets; i++) {
+            if (bucketEpochs.get(i) >= oldestEpoch) {
+                total += counters.get(i);
+            }
+        }
+        return total;
+    }
+
+    private double rate(AtomicLongArray counters) {
+        var calls = total(bucketCalls);
+        return calls == 0 ? 0 : total(counters) * 100.0 / calls;
+    }
+}
@@ -0,0 +1,58 @@
+package blog.yrol.util;
+
+import blog.yrol.exception.DeadlineExceededException;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Deadline of a request, set on entry to MoviesController and carried in the Reactor context
+ * The downstream calls send the remaining time in the X-Request-Timeout-Ms header (see DeadlineExchangeFilter),
+ * hence the downstream services can give up on the work the caller is no longer waiting for.
+ * Relative time (remaining ms) is used over an absolute timestamp, so the clocks of the services don't have to be in sync.
+ * **/
+public class Deadline {
+
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    public static Optional<Deadline> from(ContextView context) {
+        return context.getOrEmpty(Deadline.class);
+    }
+
+    /**
+     * Running the given call within the timeout - the deadline starts on subscription and is visible to the downstream calls via the context
+     * Failing with DeadlineExceededException (504) once the timeout elapses, which cancels all the in-flight downstream calls.
+     * **/
+    public static <T> Mono<T> within(Mono<T> call, Duration timeout) {
+        return Mono.defer(() -> {
+            var deadline = after(timeout);
+
+            return call
+                    .timeout(timeout, Mono.error(() -> new DeadlineExceededException(
+                            String.format("Request deadline of %sms exceeded", timeout.toMillis()))))
+                    .contextWrite(context -> context.put(Deadline.class, deadline));
+        });
+    }
+
+    // Monotonic (System.nanoTime) expiry, only comparable with the other deadlines of the JVM
+    long expiresAtNanos() {
+        return expiresAtNanos;
+    }
+
+    public Duration remaining() {
+        var remainingNanos = expiresAtNanos - System.nanoTime();
+        return remainingNanos > 0 ? Duration.ofNanos(remainingNanos) : Duration.ZERO;
+    }
+}
@@ -0,0 +1,54 @@
+package blog.yrol.util;
+
+import blog.yrol.exception.DeadlineExceededException;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
+
+import java.time.Duration;
+
+/**
+ * WebClient filter propagating the request deadline (see Deadline) to the downstream services
+ * Calls made after the deadline fail fast without a request.
+ * Otherwise, the remaining time is sent in the X-Request-Timeout-Ms header and used as the response timeout (capped at responseTimeout).
+ * Calls without a deadline (ex: the movie info stream) are sent as they are.
+ * **/
+public class DeadlineExchangeFilter implements ExchangeFilterFunction {
+
+    private final Duration responseTimeout;
+
+    public DeadlineExchangeFilter(Duration responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(context -> {
+            var deadline = Deadline.from(context);
+            if (deadline.isEmpty()) {
+                return next.exchange(request);
+            }
+
+            var remaining = deadline.get().remaining();
+            if (remaining.isZero()) {
+                return Mono.error(new DeadlineExceededException(
+                        String.format("Request deadline exceeded before calling %s", request.url().getPath())));
+            }
+
+            var timeout = remaining.compareTo(responseTimeout) < 0 ? remaining : responseTimeout;
+
+            var deadlineRequest = ClientRequest.from(request)
+                    .header(Deadline.HEADER, String.valueOf(Math.max(remaining.toMillis(), 1)))
+                    .httpRequest(httpRequest -> {
+                        HttpClientRequest nativeRequest = httpRequest.getNativeRequest();
+                        nativeRequest.responseTimeout(timeout);
+                    })
+                    .build();
+
+            return next.exchange(deadlineRequest);
+        });
+    }
+}
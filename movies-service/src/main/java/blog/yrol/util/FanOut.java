@@ -0,0 +1,120 @@
+package blog.yrol.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fanning out a single upstream subscription to any number of local subscribers
+ * publish() shares the upstream, and refCount() connects it with the first subscriber and cancels it once the last one has left
+ * (after the grace period, so that subscribers coming and going don't reconnect the upstream each time).
+ * Each subscriber gets its own bounded buffer, so a slow subscriber never holds back the upstream or the other subscribers.
+ * On overflow, the oldest element of the buffer is dropped (DROP_OLDEST) or the slow subscriber is completed (DISCONNECT).
+ * Subscribers joining later receive the elements from then on (no replay).
+ * **/
+@Slf4j
+public class FanOut<T> {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+
+    private final String name;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Flux<Received<T>> shared;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Timer lag;
+    private final Counter dropped;
+    private final Counter disconnected;
+
+    /**
+     * Registering the metrics with the given name as the "stream" tag
+     * movies.streams.fanout.subscribers - number of local subscribers
+     * movies.streams.fanout.lag - time between receiving an element from the upstream and delivering it to a subscriber (time spent in the buffer)
+     * movies.streams.fanout.dropped - elements dropped from the buffers of slow subscribers (DROP_OLDEST)
+     * movies.streams.fanout.disconnected - slow subscribers completed on a buffer overflow (DISCONNECT)
+     * **/
+    public FanOut(String name, Publisher<T> upstream, int bufferSize, OverflowPolicy overflowPolicy, Duration gracePeriod, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.shared = Flux.from(upstream)
+                .map(value -> new Received<>(value, System.nanoTime()))
+                .publish()
+                .refCount(1, gracePeriod);
+
+        Gauge.builder("movies.streams.fanout.subscribers", subscribers, AtomicInteger::get)
+                .tag("stream", name)
+                .register(meterRegistry);
+
+        this.lag = Timer.builder("movies.streams.fanout.lag")
+                .tag("stream", name)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        this.dropped = Counter.builder("movies.streams.fanout.dropped")
+                .tag("stream", name)
+                .register(meterRegistry);
+
+        this.disconnected = Counter.builder("movies.streams.fanout.disconnected")
+                .tag("stream", name)
+                .register(meterRegistry);
+    }
+
+    public Flux<T> subscribe() {
+        return buffer(shared)
+                .map(received -> {
+                    lag.record(System.nanoTime() - received.nanoTime, TimeUnit.NANOSECONDS);
+                    return received.value;
+                })
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+
+    public int getSubscribers() {
+        return subscribers.get();
+    }
+
+    private Flux<Received<T>> buffer(Flux<Received<T>> flux) {
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            return flux.onBackpressureBuffer(bufferSize, received -> dropped.increment(), BufferOverflowStrategy.DROP_OLDEST);
+        }
+
+        // Completing the subscriber as soon as its buffer overflows, regardless of its demand
+        return Flux.defer(() -> {
+            Sinks.Empty<Void> overflow = Sinks.empty();
+
+            return flux.onBackpressureBuffer(bufferSize, received -> {
+                        if (overflow.tryEmitEmpty().isSuccess()) {
+                            log.info("Disconnecting a slow subscriber of the {} stream, more than {} elements behind", name, bufferSize);
+                            disconnected.increment();
+                        }
+                    }, BufferOverflowStrategy.DROP_LATEST)
+                    .takeUntilOther(overflow.asMono());
+        });
+    }
+
+    private static final class Received<T> {
+
+        private final T value;
+        private final long nanoTime;
+
+        private Received(T value, long nanoTime) {
+            this.value = value;
+            this.nanoTime = nanoTime;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package blog.yrol.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests of a downstream service (ex: reviews)
+ * When an attempt hasn't answered within the hedge delay, an identical attempt is sent and whichever answers first wins (the other one is cancelled).
+ * The hedge delay is the given percentile of the recent attempt latencies (LatencyTracker), but not less than minDelay.
+ * Until enough latencies are recorded, initialDelay is used.
+ * The hedges are capped by a RequestBudget (ex: ratio 0.1 - at most one hedge per ten calls), hence hedging can't double the load of a slow service.
+ * **/
+@Slf4j
+public class Hedger {
+
+    private final boolean enabled;
+
+    private final Duration minDelay;
+    private final Duration initialDelay;
+    private final LatencyTracker latencyTracker;
+    private final RequestBudget budget;
+
+    private final Counter hedgesCounter;
+    private final Counter hedgeWinsCounter;
+    private final Counter budgetExhaustedCounter;
+
+    /**
+     * Registering the metrics with the given name as the "client" tag
+     * movies.client.hedge.requests - number of hedges sent
+     * movies.client.hedge.wins - number of hedges answered before the original attempt
+     * movies.client.hedge.budget.exhausted - number of hedges skipped due to the exhausted budget
+     * movies.client.hedge.delay - current hedge delay (ms)
+     * **/
+    public Hedger(String name, boolean enabled, Duration minDelay, Duration initialDelay,
+                  LatencyTracker latencyTracker, RequestBudget budget, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.minDelay = minDelay;
+        this.initialDelay = initialDelay;
+        this.latencyTracker = latencyTracker;
+        this.budget = budget;
+
+        this.hedgesCounter = Counter.builder("movies.client.hedge.requests")
+                .tag("client", name)
+                .register(meterRegistry);
+
+        this.hedgeWinsCounter = Counter.builder("movies.client.hedge.wins")
+                .tag("client", name)
+                .register(meterRegistry);
+
+        this.budgetExhaustedCounter = Counter.builder("movies.client.hedge.budget.exhausted")
+                .tag("client", name)
+                .register(meterRegistry);
+
+        Gauge.builder("movies.client.hedge.delay", this, hedger -> hedger.delay().toMillis())
+                .tag("client", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hedging the attempt (each subscription of the returned Mono is a new call, hence it can be retried)
+     * Errors aren't hedged - the first signal (value or error) wins, retrying is up to the caller.
+     * **/
+    public <T> Mono<T> hedge(Supplier<Mono<T>> attempt) {
+        if (!enabled) {
+            return Mono.defer(attempt);
+        }
+
+        return Mono.defer(() -> {
+            budget.deposit();
+
+            var primary = timed(attempt.get());
+
+            var hedge = Mono.delay(delay())
+                    .flatMap(tick -> {
+                        if (!budget.tryWithdraw()) {
+                            budgetExhaustedCounter.increment();
+                            return Mono.<T>never();
+                        }
+
+                        hedgesCounter.increment();
+                        return timed(attempt.get()).doOnNext(value -> hedgeWinsCounter.increment());
+                    });
+
+            return Mono.firstWithSignal(primary, hedge);
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Recording the latency of an attempt
+     * A cancelled attempt (lost the race) records its elapsed time, which is a lower bound of its actual latency - skipping it would bias the percentile towards the fast attempts.
+     * **/
+    private <T> Mono<T> timed(Mono<T> attempt) {
+        return Mono.defer(() -> {
+            var start = System.nanoTime();
+            return attempt
+                    .doOnSuccess(value -> latencyTracker.record(System.nanoTime() - start))
+                    .doOnCancel(() -> latencyTracker.record(System.nanoTime() - start));
+        });
+    }
+
+    private Duration delay() {
+        var percentileNanos = latencyTracker.percentileNanos();
+        if (percentileNanos < 0) {
+            return initialDelay;
+        }
+
+        var delay = Duration.ofNanos(percentileNanos);
+        return delay.compareTo(minDelay) < 0 ? minDelay : delay;
+    }
+}
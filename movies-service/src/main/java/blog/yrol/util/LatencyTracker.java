@@ -0,0 +1,52 @@
+package blog.yrol.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free ring buffer of the latest latencies, used for estimating a percentile of the recent calls (ex: hedge delay)
+ * The percentile is recomputed (sorting a copy of the ring) once every "recomputeEvery" records instead of on each read.
+ * **/
+public class LatencyTracker {
+
+    private final AtomicLongArray samples;
+    private final AtomicLong recorded = new AtomicLong();
+    private final double percentile;
+    private final int recomputeEvery;
+
+    private volatile long percentileNanos = -1;
+
+    public LatencyTracker(int size, double percentile, int recomputeEvery) {
+        this.samples = new AtomicLongArray(size);
+        this.percentile = percentile;
+        this.recomputeEvery = recomputeEvery;
+    }
+
+    public void record(long elapsedNanos) {
+        var count = recorded.getAndIncrement();
+        samples.set((int) (count % samples.length()), elapsedNanos);
+
+        if ((count + 1) % recomputeEvery == 0) {
+            percentileNanos = compute(Math.min(count + 1, samples.length()));
+        }
+    }
+
+    /**
+     * The percentile in nanos, or -1 until the first recomputeEvery latencies have been recorded
+     * **/
+    public long percentileNanos() {
+        return percentileNanos;
+    }
+
+    private long compute(long count) {
+        var sorted = new long[(int) count];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+
+        var index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+}
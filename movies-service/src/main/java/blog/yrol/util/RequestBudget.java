@@ -0,0 +1,44 @@
+package blog.yrol.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket capping the extra requests (ex: retries) at a percentage of the live traffic
+ * Each live request deposits "ratio" tokens (up to maxTokens) and each extra request withdraws one token.
+ * Ex: ratio 0.2 allows one retry per five requests once the initial (full) bucket has been used up.
+ * Tokens are stored in thousandths so that fractional deposits can be handled with an AtomicLong.
+ * **/
+public class RequestBudget {
+
+    private static final long SCALE = 1000;
+
+    private final AtomicLong tokens;
+    private final long maxTokens;
+    private final long depositPerRequest;
+
+    public RequestBudget(double ratio, int maxTokens) {
+        this.maxTokens = maxTokens * SCALE;
+        this.depositPerRequest = Math.round(ratio * SCALE);
+        this.tokens = new AtomicLong(this.maxTokens);
+    }
+
+    public void deposit() {
+        tokens.getAndUpdate(current -> Math.min(maxTokens, current + depositPerRequest));
+    }
+
+    public boolean tryWithdraw() {
+        while (true) {
+            var current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    public double availableTokens() {
+        return tokens.get() / (double) SCALE;
+    }
+}
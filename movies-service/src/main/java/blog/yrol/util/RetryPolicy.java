@@ -0,0 +1,76 @@
+package blog.yrol.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy of a downstream service (ex: moviesInfo, reviews), used by RetryUtil
+ * Exponential backoff with full jitter - the delay before a retry is a random value between 0 and min(maxBackoff, minBackoff * 2^retry),
+ * which spreads the retries of the in-flight requests instead of retrying all of them in lockstep.
+ * The retries are also capped by a RequestBudget shared by all the calls to the same downstream service.
+ * **/
+@Getter
+public class RetryPolicy {
+
+    private final String name;
+    private final long maxRetries;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private final RequestBudget budget;
+
+    private final Counter retriesCounter;
+    private final Counter budgetExhaustedCounter;
+
+    /**
+     * Registering the metrics with the given name as the "client" tag
+     * movies.client.retries - number of retries
+     * movies.client.retry.budget.exhausted - number of retries rejected due to the exhausted budget
+     * movies.client.retry.budget.tokens - number of retries currently available in the budget
+     * **/
+    public RetryPolicy(String name, long maxRetries, Duration minBackoff, Duration maxBackoff, RequestBudget budget, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxRetries = maxRetries;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+        this.budget = budget;
+
+        this.retriesCounter = Counter.builder("movies.client.retries")
+                .tag("client", name)
+                .register(meterRegistry);
+
+        this.budgetExhaustedCounter = Counter.builder("movies.client.retry.budget.exhausted")
+                .tag("client", name)
+                .register(meterRegistry);
+
+        Gauge.builder("movies.client.retry.budget.tokens", budget, RequestBudget::availableTokens)
+                .tag("client", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Full jitter backoff of the given retry (starting from 0)
+     * **/
+    public Duration backoff(long retry) {
+        var exponent = Math.min(retry, 30);
+        var ceiling = Math.min(maxBackoff.toMillis(), minBackoff.toMillis() * (1L << exponent));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    /**
+     * Withdrawing a retry from the budget, returns false (and counts it) when the budget is exhausted
+     * **/
+    public boolean tryAcquireRetry() {
+        if (budget.tryWithdraw()) {
+            retriesCounter.increment();
+            return true;
+        }
+
+        budgetExhaustedCounter.increment();
+        return false;
+    }
+}
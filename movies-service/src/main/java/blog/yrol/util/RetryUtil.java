@@ -3,31 +3,60 @@ package blog.yrol.util;
 import blog.yrol.exception.MoviesInfoServerException;
 import blog.yrol.exception.ReviewsServerException;
 import lombok.extern.slf4j.Slf4j;
-import reactor.core.Exceptions;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
-import java.time.Duration;
-
 /**
  * A util class for externalising the Retry Logic
  * **/
 @Slf4j
 public class RetryUtil {
 
-    public static Retry retrySpec() {
+    public static Retry retrySpec(RetryPolicy retryPolicy) {
         /**
          * Retry spec that will be used when doing the retry.
-         * CConfigured to retry maximum of 3 attempts with a delay of 1 second.
+         * Configured to retry maximum of retryPolicy.maxRetries attempts with an exponential backoff and full jitter (see RetryPolicy).
          * Avoiding / exempt 404 errors by filtering only MoviesInfoServerException OR ReviewsServerException
-         * Exceptions.propagate will make sure it'll throw the actual exception. Ex: in case of 500, it'll be "Server Exception in MoviesInfoService: %s"
-         * If Exceptions.propagate is not used it will throw the default exhaust error which is similar to: "Retries exhausted: 3/3"
+         * Each call (subscription) deposits to the retry budget of the downstream service, and each retry withdraws from it.
+         * Once the budget is exhausted the calls are no longer retried, hence retries can't multiply the load when the downstream service is struggling.
+         * Retries are skipped when the request deadline (see Deadline) expires before the backoff does.
+         * Returning the actual failure (instead of the default "Retries exhausted: 3/3") makes sure it'll throw the actual exception. Ex: in case of 500, it'll be "Server Exception in MoviesInfoService: %s"
          * **/
-        return Retry.fixedDelay(3, Duration.ofSeconds(1))
-                .filter(ex -> ex instanceof MoviesInfoServerException || ex instanceof ReviewsServerException)
-                .doAfterRetry(retrySignal -> {
-                    log.info(String.format("Number of retries: %s", retrySignal.totalRetries()));
-                })
-                .onRetryExhaustedThrow(((retryBackoffSpec, retrySignal) ->
-                        Exceptions.propagate(retrySignal.failure())));
+        return new Retry() {
+            @Override
+            public Publisher<?> generateCompanion(Flux<RetrySignal> retrySignals) {
+                retryPolicy.getBudget().deposit();
+
+                return retrySignals.concatMap(retrySignal -> Mono.deferContextual(context -> {
+                    var failure = retrySignal.failure();
+
+                    if (!isRetryable(failure) || retrySignal.totalRetries() >= retryPolicy.getMaxRetries()) {
+                        return Mono.error(failure);
+                    }
+
+                    var backoff = retryPolicy.backoff(retrySignal.totalRetries());
+
+                    var deadline = Deadline.from(context);
+                    if (deadline.isPresent() && deadline.get().remaining().compareTo(backoff) <= 0) {
+                        log.warn("Request deadline leaves no time for retrying {}: {}", retryPolicy.getName(), failure.getMessage());
+                        return Mono.error(failure);
+                    }
+
+                    if (!retryPolicy.tryAcquireRetry()) {
+                        log.warn("Retry budget of {} exhausted, not retrying: {}", retryPolicy.getName(), failure.getMessage());
+                        return Mono.error(failure);
+                    }
+
+                    log.info(String.format("Number of retries: %s", retrySignal.totalRetries() + 1));
+                    return Mono.delay(backoff);
+                }));
+            }
+        };
+    }
+
+    private static boolean isRetryable(Throwable ex) {
+        return ex instanceof MoviesInfoServerException || ex instanceof ReviewsServerException;
     }
 }
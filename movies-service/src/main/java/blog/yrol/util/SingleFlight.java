@@ -0,0 +1,98 @@
+package blog.yrol.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight request coalescing
+ * Concurrent calls for the same key share one in-flight call, and the result is fanned out to all the callers (waiters).
+ * replay() makes sure a waiter joining after the first element has been emitted still receives all the elements.
+ * refCount() makes sure a waiter cancelling doesn't cancel the shared call for the others - the shared call is cancelled only when every waiter has cancelled.
+ * The key is removed once the shared call terminates, hence results are never reused by the calls that come after (no caching).
+ * The shared call is subscribed with the context of the first waiter, hence runs within its request deadline (see Deadline).
+ * So that a waiter with a longer deadline isn't failed by a shorter one, the calls are keyed by deadline bucket as well (DEADLINE_BUCKET):
+ * only the waiters whose deadlines expire within the same bucket share a call, and their deadlines differ by less than the bucket.
+ * Calls without a deadline share a call with each other only.
+ * **/
+public class SingleFlight<K, V> {
+
+    // Width of the deadline buckets - waiters arriving within about the same time with the same timeout still share a call
+    private static final long DEADLINE_BUCKET_NANOS = Duration.ofMillis(100).toNanos();
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final ConcurrentMap<Map.Entry<K, Long>, Flux<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+
+    /**
+     * Registering the metrics with the given name as the "client" tag
+     * movies.client.coalescing.requests - number of calls made to the SingleFlight
+     * movies.client.coalescing.executions - number of calls actually executed (the rest were coalesced)
+     * movies.client.coalescing.ratio - fraction of the calls served by an already in-flight call
+     * **/
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        FunctionCounter.builder("movies.client.coalescing.requests", requests, LongAdder::doubleValue)
+                .tag("client", name)
+                .register(meterRegistry);
+
+        FunctionCounter.builder("movies.client.coalescing.executions", executions, LongAdder::doubleValue)
+                .tag("client", name)
+                .register(meterRegistry);
+
+        Gauge.builder("movies.client.coalescing.ratio", this, SingleFlight::coalescingRatio)
+                .tag("client", name)
+                .register(meterRegistry);
+    }
+
+    public Mono<V> mono(K key, Supplier<? extends Publisher<V>> call) {
+        return flux(key, call).singleOrEmpty();
+    }
+
+    public Flux<V> flux(K key, Supplier<? extends Publisher<V>> call) {
+        return Flux.deferContextual(context -> {
+            requests.increment();
+
+            var deadlineBucket = Deadline.from(context)
+                    .map(deadline -> Math.floorDiv(deadline.expiresAtNanos(), DEADLINE_BUCKET_NANOS))
+                    .orElse(NO_DEADLINE);
+
+            return inFlight.computeIfAbsent(Map.entry(key, deadlineBucket), k -> share(k, call));
+        });
+    }
+
+    public double coalescingRatio() {
+        var requestCount = requests.sum();
+        if (requestCount == 0) {
+            return 0;
+        }
+        return 1 - (double) executions.sum() / requestCount;
+    }
+
+    private Flux<V> share(Map.Entry<K, Long> key, Supplier<? extends Publisher<V>> call) {
+        executions.increment();
+
+        var shared = new AtomicReference<Flux<V>>();
+        // Removing the key before the result reaches the waiters (doFinally would run after), so that a call made
+        // as soon as a waiter has its result doesn't join the terminated call and get its (replayed) result
+        var sharedFlux = Flux.from(call.get())
+                .doOnTerminate(() -> inFlight.remove(key, shared.get()))
+                .doFinally(signal -> inFlight.remove(key, shared.get()))
+                .replay()
+                .refCount();
+
+        shared.set(sharedFlux);
+        return sharedFlux;
+    }
+}
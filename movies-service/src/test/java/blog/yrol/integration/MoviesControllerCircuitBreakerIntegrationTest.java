@@ -0,0 +1,193 @@
+package blog.yrol.integration;
+
+import blog.yrol.cache.MovieInfoCache;
+import blog.yrol.domain.Movie;
+import blog.yrol.util.CircuitBreaker;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.http.Fault;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebClient
+@AutoConfigureWireMock(port = 0)
+
+// Small circuit breaker windows (without retries) so that a couple of faults open the circuit, and a short request deadline cutting off the hung calls
+@TestPropertySource(
+        properties = {
+                "rest.client.moviesInfoUrl=http://localhost:${wiremock.server.port}/v1/moviesinfo",
+                "rest.client.reviewsUrl=http://localhost:${wiremock.server.port}/v1/reviews",
+                "rest.client.movies-info.retry.max-retries=0",
+                "rest.client.reviews.retry.max-retries=0",
+                "rest.client.movies-info.circuit-breaker.minimum-calls=2",
+                "rest.client.movies-info.circuit-breaker.open-duration=PT1S",
+                "rest.client.movies-info.circuit-breaker.half-open-calls=1",
+                "rest.client.reviews.circuit-breaker.minimum-calls=2",
+                "rest.client.reviews.circuit-breaker.open-duration=PT1S",
+                "rest.client.reviews.circuit-breaker.half-open-calls=1",
+                "rest.client.reviews.hedge.enabled=false",
+                "movies.request.timeout=PT0.5S"
+        }
+)
+public class MoviesControllerCircuitBreakerIntegrationTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    MovieInfoCache movieInfoCache;
+
+    @Autowired
+    @Qualifier("moviesInfoCircuitBreaker")
+    CircuitBreaker moviesInfoCircuitBreaker;
+
+    @Autowired
+    @Qualifier("reviewsCircuitBreaker")
+    CircuitBreaker reviewsCircuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.reset();
+        movieInfoCache.invalidateAll();
+        moviesInfoCircuitBreaker.reset();
+        reviewsCircuitBreaker.reset();
+    }
+
+    @Test
+    void testRetrieveMovieById_whenMoviesInfoServiceKeepsFailing_openCircuitAndFailFast() {
+
+        var movieId = "abc";
+
+        // Connection reset by the movies info service
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+        // Opening the circuit (minimum calls: 2)
+        retrieveMovie(movieId).expectStatus().is5xxServerError();
+        retrieveMovie(movieId).expectStatus().is5xxServerError();
+
+        assertEquals(CircuitBreaker.State.OPEN, moviesInfoCircuitBreaker.getState());
+
+        retrieveMovie(movieId)
+                .expectStatus().is5xxServerError()
+                .expectBody(String.class)
+                .isEqualTo("Server Exception in MoviesInfoService: circuit breaker is open");
+
+        // Verifying the call was rejected without calling the movies info service
+        WireMock.verify(2, getRequestedFor(urlEqualTo("/v1/moviesinfo/" + movieId)));
+    }
+
+    @Test
+    void testRetrieveMovieById_whenMoviesInfoServiceHangs_openCircuitOnceTheDeadlineCutsOffTheCalls() {
+
+        var movieId = "abc";
+
+        // Movies info service answering long after the request deadline (500ms)
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withFixedDelay(3000)
+                        .withBodyFile("moviesinfo.json")));
+
+        // Opening the circuit (minimum calls: 2) - the cancelled calls are recorded, although none of them completes
+        retrieveMovie(movieId).expectStatus().isEqualTo(504);
+        retrieveMovie(movieId).expectStatus().isEqualTo(504);
+
+        assertEquals(CircuitBreaker.State.OPEN, moviesInfoCircuitBreaker.getState());
+
+        retrieveMovie(movieId)
+                .expectStatus().is5xxServerError()
+                .expectBody(String.class)
+                .isEqualTo("Server Exception in MoviesInfoService: circuit breaker is open");
+
+        WireMock.verify(2, getRequestedFor(urlEqualTo("/v1/moviesinfo/" + movieId)));
+    }
+
+    @Test
+    void testRetrieveMovieById_whenMoviesInfoServiceRecovers_closeCircuitAfterProbe() throws InterruptedException {
+
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+        retrieveMovie(movieId).expectStatus().is5xxServerError();
+        retrieveMovie(movieId).expectStatus().is5xxServerError();
+
+        assertEquals(CircuitBreaker.State.OPEN, moviesInfoCircuitBreaker.getState());
+
+        // Movies info service recovered
+        WireMock.reset();
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        // Waiting for the open duration to elapse, hence the next call is a probe (half open)
+        Thread.sleep(1200);
+
+        retrieveMovie(movieId)
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                });
+
+        assertEquals(CircuitBreaker.State.CLOSED, moviesInfoCircuitBreaker.getState());
+    }
+
+    @Test
+    void testRetrieveMovieById_whenReviewsServiceKeepsFailing_openCircuitAndFailFast() {
+
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        // Reviews service closing the connection without a response
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=" + movieId))
+                .willReturn(aResponse().withFault(Fault.EMPTY_RESPONSE)));
+
+        retrieveMovie(movieId).expectStatus().is5xxServerError();
+        retrieveMovie(movieId).expectStatus().is5xxServerError();
+
+        assertEquals(CircuitBreaker.State.OPEN, reviewsCircuitBreaker.getState());
+
+        retrieveMovie(movieId)
+                .expectStatus().is5xxServerError()
+                .expectBody(String.class)
+                .isEqualTo("Server Exception in MoviesReviewService: circuit breaker is open");
+
+        WireMock.verify(2, getRequestedFor(urlEqualTo("/v1/reviews?movieInfoId=" + movieId)));
+
+        // The movies info circuit is not affected by the reviews service failures
+        assertEquals(CircuitBreaker.State.CLOSED, moviesInfoCircuitBreaker.getState());
+    }
+
+    private WebTestClient.ResponseSpec retrieveMovie(String movieId) {
+        return webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange();
+    }
+}
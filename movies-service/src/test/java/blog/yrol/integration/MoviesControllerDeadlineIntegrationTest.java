@@ -0,0 +1,110 @@
+package blog.yrol.integration;
+
+import blog.yrol.cache.MovieInfoCache;
+import blog.yrol.util.Deadline;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebClient
+@AutoConfigureWireMock(port = 0)
+
+// Short request deadline, so that a slow downstream stub exceeds it
+@TestPropertySource(
+        properties = {
+                "rest.client.moviesInfoUrl=http://localhost:${wiremock.server.port}/v1/moviesinfo",
+                "rest.client.reviewsUrl=http://localhost:${wiremock.server.port}/v1/reviews",
+                "rest.client.reviews.hedge.enabled=false",
+                "movies.request.timeout=PT0.5S"
+        }
+)
+public class MoviesControllerDeadlineIntegrationTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    MovieInfoCache movieInfoCache;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.reset();
+        movieInfoCache.invalidateAll();
+    }
+
+    @Test
+    void testRetrieveMovieById_whenDownstreamServicesAnswer_propagateRemainingDeadline() {
+
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        retrieveMovie(movieId).expectStatus().isOk();
+
+        // Verifying both calls carried the remaining time (at most the 500ms deadline)
+        var moviesInfoRequest = WireMock.findAll(getRequestedFor(urlEqualTo("/v1/moviesinfo/" + movieId))).get(0);
+        var reviewsRequest = WireMock.findAll(getRequestedFor(urlEqualTo("/v1/reviews?movieInfoId=" + movieId))).get(0);
+
+        var moviesInfoTimeout = Long.parseLong(moviesInfoRequest.getHeader(Deadline.HEADER));
+        var reviewsTimeout = Long.parseLong(reviewsRequest.getHeader(Deadline.HEADER));
+
+        assertTrue(moviesInfoTimeout > 0 && moviesInfoTimeout <= 500);
+        assertTrue(reviewsTimeout > 0 && reviewsTimeout <= 500);
+    }
+
+    @Test
+    void testRetrieveMovieById_whenReviewsServiceHangs_returnGatewayTimeout() {
+
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withFixedDelay(3000)
+                        .withBodyFile("reviews.json")));
+
+        var start = System.nanoTime();
+
+        retrieveMovie(movieId)
+                .expectStatus().isEqualTo(504)
+                .expectBody(String.class)
+                .isEqualTo("Request deadline of 500ms exceeded");
+
+        // Answered at the deadline instead of waiting for the reviews service (and its retries)
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000);
+    }
+
+    private WebTestClient.ResponseSpec retrieveMovie(String movieId) {
+        return webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange();
+    }
+}
@@ -0,0 +1,138 @@
+package blog.yrol.integration;
+
+import blog.yrol.cache.MovieInfoCache;
+import blog.yrol.cache.ReviewListCache;
+import blog.yrol.controller.MoviesController;
+import blog.yrol.domain.Movie;
+import blog.yrol.util.CircuitBreaker;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebClient
+@AutoConfigureWireMock(port = 0)
+
+// Degraded mode with a 300ms latency budget for the reviews (without retries, so that the failures are immediate)
+@TestPropertySource(
+        properties = {
+                "rest.client.moviesInfoUrl=http://localhost:${wiremock.server.port}/v1/moviesinfo",
+                "rest.client.reviewsUrl=http://localhost:${wiremock.server.port}/v1/reviews",
+                "rest.client.reviews.hedge.enabled=false",
+                "rest.client.reviews.retry.max-retries=0",
+                "movies.reviews.degraded-mode.enabled=true",
+                "movies.reviews.degraded-mode.latency-budget=PT0.3S"
+        }
+)
+public class MoviesControllerDegradedModeIntegrationTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    MovieInfoCache movieInfoCache;
+
+    @Autowired
+    ReviewListCache reviewListCache;
+
+    @Autowired
+    @Qualifier("reviewsCircuitBreaker")
+    CircuitBreaker reviewsCircuitBreaker;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.reset();
+        movieInfoCache.invalidateAll();
+        reviewListCache.invalidateAll();
+        reviewsCircuitBreaker.reset();
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/abc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+    }
+
+    @Test
+    void testRetrieveMovieById_whenReviewsServiceIsDown_returnMovieWithoutReviewsAsPartial() {
+
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=abc"))
+                .willReturn(aResponse()
+                        .withBody("Server down")
+                        .withStatus(500)));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(MoviesController.PARTIAL_RESPONSE_HEADER, "reviews=empty")
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                    assertEquals(0, movie.getReviewList().size());
+                });
+
+        assertTrue(meterRegistry.get("movies.responses.partial").tag("reason", "error").tag("source", "empty").counter().count() >= 1);
+    }
+
+    @Test
+    void testRetrieveMovieById_whenReviewsServiceIsSlow_returnStaleReviewsWithinLatencyBudget() {
+
+        // First request succeeds and records the reviews
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=abc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(MoviesController.PARTIAL_RESPONSE_HEADER);
+
+        // Reviews service slows down beyond the latency budget
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=abc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withFixedDelay(2000)
+                        .withBodyFile("reviews.json")));
+
+        var start = System.nanoTime();
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(MoviesController.PARTIAL_RESPONSE_HEADER, "reviews=stale")
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assertEquals(2, movie.getReviewList().size());
+                });
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1500);
+        assertTrue(meterRegistry.get("movies.responses.partial").tag("reason", "timeout").tag("source", "stale").counter().count() >= 1);
+    }
+}
@@ -1,33 +1,55 @@
 package blog.yrol.integration;
 
 
+import blog.yrol.cache.MovieInfoCache;
+import blog.yrol.client.MoviesInfoRestClient;
+import blog.yrol.config.WebClientConfig;
 import blog.yrol.domain.Movie;
+import blog.yrol.domain.MovieInfo;
+import blog.yrol.domain.MovieStreamElement;
+import blog.yrol.domain.Review;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
 @AutoConfigureWebClient
+@AutoConfigureMetrics // exporting the metrics in the Prometheus format (disabled in the tests by default)
 @AutoConfigureWireMock(port = 8084) // spin up a http test server on port 8084 to run tests
 
 // Using TestPropertySource to override the actual service endpoints (moviesinfo and reviews) with port 8084 to communicate with the wiremock server (create in above AutoConfigureWireMock)
 @TestPropertySource(
         properties = {
                 "rest.client.moviesInfoUrl=http://localhost:8084/v1/moviesinfo",
-                "rest.client.reviewsUrl=http://localhost:8084/v1/reviews"
+                "rest.client.reviewsUrl=http://localhost:8084/v1/reviews",
+                "rest.client.reviews.hedge.enabled=false", // the tests verify the exact number of calls
+                "rest.client.movies-info.stream.min-backoff=PT0.05S" // resuming the movie info stream right away
         }
 )
 public class MoviesControllerIntegrationTest {
@@ -35,9 +57,18 @@ public class MoviesControllerIntegrationTest {
     @Autowired
     WebTestClient webTestClient;
 
+    @Autowired
+    MovieInfoCache movieInfoCache;
+
+    @Autowired
+    MoviesInfoRestClient moviesInfoRestClient;
+
     @BeforeEach
     void setUp() {
         WireMock.reset();
+
+        // making sure the movie info cached by a previous test is not used, since each test has its own stubs
+        movieInfoCache.invalidateAll();
     }
 
     @Test
@@ -73,6 +104,255 @@ public class MoviesControllerIntegrationTest {
     }
 
 
+    @Test
+    void testPrometheusEndpoint_whenMovieRetrieved_exposeLatencyHistogramsPerRouteAndDownstream() {
+
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk();
+
+        var metrics = webTestClient
+                .get()
+                .uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class)
+                .getResponseBody()
+                .collect(Collectors.joining("\n")) // decoded line by line
+                .block(Duration.ofSeconds(10));
+
+        // Server latency histogram per route
+        assertTrue(metrics.contains("http_server_requests_seconds_bucket{application=\"movies-service\",exception=\"None\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/v1/movies/{id}\","));
+
+        // Client latency histogram per downstream - the movie ID (query param) is left out of the uri
+        assertTrue(metrics.contains("http_client_requests_seconds_bucket{application=\"movies-service\",client_name=\"localhost:8084\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/v1/reviews\","));
+        assertFalse(metrics.contains("movieInfoId="));
+    }
+
+    @Test
+    void testSignalTracingEndpoint_whenIdsProvided_switchTracingOnForThoseIds() {
+
+        try {
+            webTestClient
+                    .post()
+                    .uri("/actuator/signaltracing")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(Map.of("enabled", true, "ids", "abc,xyz"))
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.enabled").isEqualTo(true)
+                    .jsonPath("$.sampleRate").isEqualTo(0.01)
+                    .jsonPath("$.ids.length()").isEqualTo(2);
+
+            webTestClient
+                    .get()
+                    .uri("/actuator/signaltracing")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.enabled").isEqualTo(true);
+        } finally {
+            webTestClient
+                    .post()
+                    .uri("/actuator/signaltracing")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(Map.of("enabled", false, "ids", ""))
+                    .exchange()
+                    .expectStatus().isOk();
+        }
+    }
+
+    @Test
+    void testRetrieveMovieById_whenReviewLimitAndSortProvided_returnTopReviewsOnly() {
+
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        // Sorted and limited by the reviews service
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=" + movieId + "&limit=1&sort=rating"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[{\"reviewId\":\"1\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}]")));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}?reviewLimit=1&reviewSort=rating", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assertEquals(1, Objects.requireNonNull(movie).getReviewList().size());
+                    assertEquals(9.0, movie.getReviewList().get(0).getRating());
+                });
+    }
+
+    @Test
+    void testRetrieveMovieById_whenUnknownReviewSortProvided_return400Response() {
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}?reviewSort=comment", "abc")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        WireMock.verify(0, getRequestedFor(urlPathEqualTo("/v1/moviesinfo/abc")));
+    }
+
+    @Test
+    void testRetrieveMovieById_whenReviewsServiceRespondsInSmile_returnMovieAndReviews() throws Exception {
+
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        // Reviews service honouring the Smile preference of the client
+        var reviews = List.of(new Review("1", 1L, "Awesome Movie", 9.0), new Review("2", 1L, "Excellent Movie", 8.0));
+
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=" + movieId))
+                .withHeader("Accept", containing("application/x-jackson-smile"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/x-jackson-smile")
+                        .withBody(new ObjectMapper(new SmileFactory()).writeValueAsBytes(reviews))));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    var movie = movieEntityExchangeResult.getResponseBody();
+                    assertEquals(reviews, Objects.requireNonNull(movie).getReviewList());
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                });
+
+        // JSON remains acceptable, for the services not supporting Smile
+        verify(getRequestedFor(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .withHeader("Accept", equalTo(WebClientConfig.SMILE_PREFERRED)));
+    }
+
+    @Test
+    void testRetrieveMovieSummaryById_whenValidMovieIdProvided_returnMovieWithReviewSummaryOnly() {
+
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews/summary?movieInfoId=" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"count\":2,\"average\":8.5,\"min\":8.0,\"max\":9.0,\"histogram\":[{\"rating\":8,\"count\":1},{\"rating\":9,\"count\":1}]}")));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}?view=summary", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.movieInfo.name").isEqualTo("Batman Begins")
+                .jsonPath("$.reviewSummary.count").isEqualTo(2)
+                .jsonPath("$.reviewSummary.average").isEqualTo(8.5)
+                .jsonPath("$.reviewSummary.histogram.length()").isEqualTo(2)
+                .jsonPath("$.reviewList").doesNotExist();
+
+        // The reviews themselves aren't retrieved
+        WireMock.verify(0, getRequestedFor(urlPathEqualTo("/v1/reviews")));
+    }
+
+    @Test
+    void testRetrieveMovieSummaryById_whenInvalidMovieIdProvided_return404Response() {
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/def"))
+                .willReturn(aResponse().withStatus(404)));
+
+        stubFor(get(urlEqualTo("/v1/reviews/summary?movieInfoId=def"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"count\":0,\"histogram\":[]}")));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}?view=summary", "def")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testRetrieveMovieStreamById_whenValidMovieIdProvided_streamMovieInfoThenReviews() {
+
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        var elements = webTestClient
+                .get()
+                .uri("/v1/movies/{id}?view=stream", movieId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieStreamElement.class)
+                .getResponseBody()
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        // Movie info first, followed by a line per review
+        assertEquals(3, elements.size());
+        assertEquals("Batman Begins", elements.get(0).getMovieInfo().getName());
+        assertNull(elements.get(0).getReview());
+        assertNotNull(elements.get(1).getReview());
+        assertNotNull(elements.get(2).getReview());
+    }
+
+    @Test
+    void testRetrieveMovieStreamById_whenInvalidMovieIdProvided_return404Response() {
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/def"))
+                .willReturn(aResponse().withStatus(404)));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}?view=stream", "def")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        WireMock.verify(0, getRequestedFor(urlPathEqualTo("/v1/reviews")));
+    }
+
     @Test
     void testRetrieveMovieById_whenInvalidMovieIdProvided_return404Response_method_1() {
         var movieId = "abc";
@@ -233,4 +513,177 @@ public class MoviesControllerIntegrationTest {
         // Verifying the retry mechanism - making sure it attempted 4 times for the review service
         WireMock.verify(4, getRequestedFor(urlEqualTo("/v1/reviews?movieInfoId=" + movieId)));
     }
+
+    @Test
+    void testRetrieveMoviesByIds_whenValidMovieIdsProvided_returnMoviesWithReviews() {
+
+        // Creating GET stub for fetching multiple movies by Ids (in MoviesInfoRestClient)
+        stubFor(get(urlEqualTo("/v1/moviesinfo?ids=1,2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        // Creating GET stub for fetching the reviews of multiple movies (in ReviewHandler -> getReviews)
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoIds=1,2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies?ids=1,2")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .consumeWith(moviesEntityExchangeResult -> {
+                    var movies = moviesEntityExchangeResult.getResponseBody();
+                    assert Objects.requireNonNull(movies).size() == 1;
+                    assertEquals(2, movies.get(0).getReviewList().size());
+                });
+
+        // verify that the whole batch cost one call per downstream service
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/moviesinfo?ids=1,2")));
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/reviews?movieInfoIds=1,2")));
+    }
+
+    @Test
+    void testRetrieveMoviesByIds_whenNonNumericMovieIdProvided_lookUpReviewsOfNumericIdsOnly() {
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo?ids=1,abc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        // Reviews refer to the movies by a numeric ID, hence "abc" isn't sent to the reviews service
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoIds=1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies?ids=1,abc")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .hasSize(1);
+
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/reviews?movieInfoIds=1")));
+    }
+
+    @Test
+    void testRetrieveMoviesByIds_whenTooManyMovieIdsProvided_returnBadRequest() {
+        var movieIds = IntStream.rangeClosed(1, 201)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies?ids=" + movieIds)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testRetrieveMovieById_whenMovieRequestedMultipleTimes_callMoviesInfoServiceOnlyOnce() {
+        var movieId = "abc";
+
+        stubFor(get(urlEqualTo("/v1/moviesinfo/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("moviesinfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        for (int i = 0; i < 3; i++) {
+            webTestClient
+                    .get()
+                    .uri("/v1/movies/{id}", movieId)
+                    .exchange()
+                    .expectStatus().isOk();
+        }
+
+        // verify that the movie info has been served from the cache after the first call
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/moviesinfo/" + movieId)));
+        WireMock.verify(3, getRequestedFor(urlEqualTo("/v1/reviews?movieInfoId=" + movieId)));
+    }
+
+    @Test
+    void testRetrieveEnrichedMoviesStream_whenMoviesArrive_streamMoviesWithReviewsInOrder() {
+
+        // Creating GET stub for the movie info event stream (in MoviesInfoRestClient) with two movies
+        stubFor(get(urlEqualTo("/v1/moviesinfo/events"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", MediaType.TEXT_EVENT_STREAM_VALUE)
+                        .withBody(movieInfoEvent(1, "Batman Begins", 2005) + movieInfoEvent(2, "The Dark Knight", 2008))));
+
+        // Reviews of the first movie are slower, the order of the stream must be kept regardless
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withFixedDelay(200)
+                        .withBodyFile("reviews.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews?movieInfoId=2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withStatus(404)));
+
+        var movies = webTestClient
+                .get()
+                .uri("/v1/movies/streams?enriched=true")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Movie.class)
+                .getResponseBody()
+                .take(2) // the stream is resumed after the stub closes it, hence it doesn't complete
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(2, movies.size());
+        assertEquals("Batman Begins", movies.get(0).getMovieInfo().getName());
+        assertEquals(2, movies.get(0).getReviewList().size());
+        assertEquals("The Dark Knight", movies.get(1).getMovieInfo().getName());
+        assertEquals(0, movies.get(1).getReviewList().size());
+    }
+
+    @Test
+    void testRetrieveMoviesInfoStream_whenStreamIsClosed_resumeAfterLastEventId() {
+
+        // First connection delivers the events 1 & 2 and closes
+        stubFor(get(urlEqualTo("/v1/moviesinfo/events"))
+                .withHeader("Last-Event-ID", absent())
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", MediaType.TEXT_EVENT_STREAM_VALUE)
+                        .withBody(movieInfoEvent(1, "Batman Begins", 2005) + movieInfoEvent(2, "The Dark Knight", 2008))));
+
+        // Reconnection resumes after the event 2, receiving only the event published meanwhile
+        stubFor(get(urlEqualTo("/v1/moviesinfo/events"))
+                .withHeader("Last-Event-ID", equalTo("2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", MediaType.TEXT_EVENT_STREAM_VALUE)
+                        .withBody(movieInfoEvent(3, "The Dark Knight Rises", 2012))));
+
+        // Calling the client directly, since the /v1/movies/streams connection is shared and could already be open
+        var moviesInfo = moviesInfoRestClient.retrieveMoviesInfoStream()
+                .take(3)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(List.of("Batman Begins", "The Dark Knight", "The Dark Knight Rises"),
+                moviesInfo.stream().map(MovieInfo::getName).collect(Collectors.toList()));
+        WireMock.verify(getRequestedFor(urlEqualTo("/v1/moviesinfo/events")).withHeader("Last-Event-ID", equalTo("2")));
+    }
+
+    private static String movieInfoEvent(int id, String name, int year) {
+        return String.format("id:%d\nevent:movieInfo\ndata:{\"movieInfoId\":\"%d\",\"name\":\"%s\",\"year\":%d,\"cast\":[\"Christian Bale\"],\"release_date\":\"%d-06-15\"}\n\n",
+                id, id, name, year, year);
+    }
 }
@@ -0,0 +1,114 @@
+package blog.yrol.unit;
+
+import blog.yrol.util.FanOut;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FanOutTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private Sinks.Many<String> upstream;
+    private AtomicInteger subscriptions;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        upstream = Sinks.many().multicast().onBackpressureBuffer();
+        subscriptions = new AtomicInteger();
+    }
+
+    @Test
+    void testSubscribe_whenSubscribedConcurrently_shareOneUpstreamSubscription() {
+
+        // Arrange
+        var fanOut = fanOut(FanOut.OverflowPolicy.DROP_OLDEST);
+        var first = new ArrayList<String>();
+        var second = new ArrayList<String>();
+
+        // Act
+        var firstSubscription = fanOut.subscribe().subscribe(first::add);
+        var secondSubscription = fanOut.subscribe().subscribe(second::add);
+        emit("Batman Begins", "The Dark Knight");
+
+        // Assert
+        assertEquals(1, subscriptions.get());
+        assertEquals(2, fanOut.getSubscribers());
+        assertEquals(List.of("Batman Begins", "The Dark Knight"), first);
+        assertEquals(List.of("Batman Begins", "The Dark Knight"), second);
+
+        // Upstream is cancelled once the last subscriber has left
+        firstSubscription.dispose();
+        assertEquals(1, upstream.currentSubscriberCount());
+
+        secondSubscription.dispose();
+        assertEquals(0, upstream.currentSubscriberCount());
+        assertEquals(0, fanOut.getSubscribers());
+    }
+
+    @Test
+    void testSubscribe_whenSubscriberIsSlowWithDropOldest_dropOldestWithoutHoldingBackOthers() {
+
+        // Arrange
+        var fanOut = fanOut(FanOut.OverflowPolicy.DROP_OLDEST);
+        var fast = new ArrayList<String>();
+        fanOut.subscribe().subscribe(fast::add);
+
+        // Act & Assert - the slow subscriber requests nothing until all six movies have been emitted
+        StepVerifier.create(fanOut.subscribe(), 0)
+                .then(() -> emit("1", "2", "3", "4", "5", "6"))
+                .thenRequest(4)
+                .expectNext("3", "4", "5", "6")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(List.of("1", "2", "3", "4", "5", "6"), fast);
+        assertEquals(2, meterRegistry.get("movies.streams.fanout.dropped").counter().count());
+    }
+
+    @Test
+    void testSubscribe_whenSubscriberIsSlowWithDisconnect_completeSlowSubscriberOnly() {
+
+        // Arrange
+        var fanOut = fanOut(FanOut.OverflowPolicy.DISCONNECT);
+        var fast = new ArrayList<String>();
+        fanOut.subscribe().subscribe(fast::add);
+
+        // Act & Assert
+        StepVerifier.create(fanOut.subscribe(), 0)
+                .then(() -> emit("1", "2", "3", "4", "5"))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        emit("6");
+
+        assertEquals(List.of("1", "2", "3", "4", "5", "6"), fast);
+        assertEquals(1, meterRegistry.get("movies.streams.fanout.disconnected").counter().count());
+        assertEquals(1, fanOut.getSubscribers());
+    }
+
+    private FanOut<String> fanOut(FanOut.OverflowPolicy overflowPolicy) {
+        var source = Flux.defer(() -> {
+            subscriptions.incrementAndGet();
+            return upstream.asFlux();
+        });
+
+        return new FanOut<>("test", source, 4, overflowPolicy, Duration.ZERO, meterRegistry);
+    }
+
+    private void emit(String... values) {
+        for (var value : values) {
+            upstream.tryEmitNext(value);
+        }
+    }
+}
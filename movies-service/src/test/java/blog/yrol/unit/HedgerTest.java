@@ -0,0 +1,97 @@
+package blog.yrol.unit;
+
+import blog.yrol.util.Hedger;
+import blog.yrol.util.LatencyTracker;
+import blog.yrol.util.RequestBudget;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HedgerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicInteger attempts;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        attempts = new AtomicInteger();
+    }
+
+    @Test
+    void testHedge_whenFirstAttemptIsSlow_returnHedgedAttempt() {
+
+        // Arrange - first attempt takes 1s, the hedge (sent after 50ms) answers immediately
+        var hedger = hedger(new RequestBudget(0.1, 10));
+
+        // Act
+        var result = hedger.hedge(() -> attempts.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofSeconds(1)).thenReturn("slow")
+                : Mono.just("hedged"));
+
+        // Assert
+        StepVerifier.create(result)
+                .expectNext("hedged")
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+
+        assertEquals(2, attempts.get());
+        assertEquals(1, meterRegistry.get("movies.client.hedge.wins").counter().count());
+    }
+
+    @Test
+    void testHedge_whenFirstAttemptIsFast_doNotHedge() {
+
+        // Arrange
+        var hedger = hedger(new RequestBudget(0.1, 10));
+
+        // Act
+        var result = hedger.hedge(() -> {
+            attempts.incrementAndGet();
+            return Mono.just("fast");
+        });
+
+        // Assert
+        StepVerifier.create(result)
+                .expectNext("fast")
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, meterRegistry.get("movies.client.hedge.requests").counter().count());
+    }
+
+    @Test
+    void testHedge_whenBudgetExhausted_waitForFirstAttempt() {
+
+        // Arrange - no tokens for hedges
+        var hedger = hedger(new RequestBudget(0.1, 0));
+
+        // Act
+        var result = hedger.hedge(() -> {
+            attempts.incrementAndGet();
+            return Mono.delay(Duration.ofMillis(200)).thenReturn("slow");
+        });
+
+        // Assert
+        StepVerifier.create(result)
+                .expectNext("slow")
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(1, attempts.get());
+        assertEquals(1, meterRegistry.get("movies.client.hedge.budget.exhausted").counter().count());
+    }
+
+    private Hedger hedger(RequestBudget budget) {
+        return new Hedger("test", true, Duration.ofMillis(10), Duration.ofMillis(50),
+                new LatencyTracker(100, 95, 10), budget, meterRegistry);
+    }
+}
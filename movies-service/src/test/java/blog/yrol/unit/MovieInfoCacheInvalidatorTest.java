@@ -0,0 +1,129 @@
+package blog.yrol.unit;
+
+import blog.yrol.cache.MovieInfoCache;
+import blog.yrol.cache.MovieInfoCacheInvalidator;
+import blog.yrol.client.MoviesInfoRestClient;
+import blog.yrol.domain.MovieInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MovieInfoCacheInvalidatorTest {
+
+    private Sinks.Many<ServerSentEvent<MovieInfo>> events;
+    private MovieInfoCache movieInfoCache;
+    private MovieInfoCacheInvalidator movieInfoCacheInvalidator;
+
+    private AtomicInteger loads;
+    private Function<String, Mono<MovieInfo>> loader;
+
+    @BeforeEach
+    void setUp() {
+        events = Sinks.many().unicast().onBackpressureBuffer();
+
+        var moviesInfoRestClient = mock(MoviesInfoRestClient.class);
+        when(moviesInfoRestClient.retrieveMoviesInfoEvents()).thenReturn(events.asFlux());
+
+        movieInfoCache = new MovieInfoCache(true, 100, Duration.ofMinutes(5), new SimpleMeterRegistry());
+        movieInfoCacheInvalidator = new MovieInfoCacheInvalidator(moviesInfoRestClient, movieInfoCache);
+        movieInfoCacheInvalidator.subscribe();
+
+        loads = new AtomicInteger();
+        loader = movieId -> {
+            loads.incrementAndGet();
+            return Mono.just(movieInfo(movieId, "Batman Begins"));
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoCacheInvalidator.dispose();
+    }
+
+    @Test
+    void testMovieInfoEvent_whenMovieIsUpdated_refreshCachedMovieInfo() {
+
+        // Arrange
+        movieInfoCache.get("1", loader).block();
+
+        // Act
+        events.tryEmitNext(ServerSentEvent.builder(movieInfo("1", "Batman Begins (Director's Cut)")).id("1").event("movieInfo").build());
+
+        // Assert (served from the cache, with the update)
+        assertEquals("Batman Begins (Director's Cut)", movieInfoCache.get("1", loader).block().getName());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testMovieInfoEvent_whenMovieIsDeleted_nextLookupMissesCache() {
+
+        // Arrange
+        movieInfoCache.get("1", loader).block();
+        movieInfoCache.get("2", loader).block();
+
+        // Act (tombstone of the movie 1)
+        var tombstone = new MovieInfo();
+        tombstone.setMovieInfoId("1");
+        events.tryEmitNext(ServerSentEvent.builder(tombstone).id("1").event(MoviesInfoRestClient.MOVIE_INFO_DELETED_EVENT).build());
+
+        movieInfoCache.get("1", loader).block();
+        movieInfoCache.get("2", loader).block();
+
+        // Assert (the deleted movie is loaded again, the other one is still cached)
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testMovieInfoEvent_whenMovieIsDeletedWhileLoading_loadedMovieInfoIsNotCached() {
+
+        // Arrange (movie info lookup in flight)
+        var lookup = Sinks.<MovieInfo>one();
+        movieInfoCache.get("1", movieId -> lookup.asMono()).subscribe();
+
+        // Act (tombstone arriving before the lookup completes)
+        var tombstone = new MovieInfo();
+        tombstone.setMovieInfoId("1");
+        events.tryEmitNext(ServerSentEvent.builder(tombstone).id("1").event(MoviesInfoRestClient.MOVIE_INFO_DELETED_EVENT).build());
+        lookup.tryEmitValue(movieInfo("1", "Batman Begins"));
+
+        movieInfoCache.get("1", loader).block();
+
+        // Assert (the movie info loaded before the deletion isn't served from the cache)
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testMovieInfoEvent_whenMovieIsUpdatedWhileLoading_loadedMovieInfoIsNotCached() {
+
+        // Arrange (movie info lookup in flight, answering with the movie info from before the update)
+        var lookup = Sinks.<MovieInfo>one();
+        movieInfoCache.get("1", movieId -> lookup.asMono()).subscribe();
+
+        // Act
+        events.tryEmitNext(ServerSentEvent.builder(movieInfo("1", "Batman Begins (Director's Cut)")).id("1").event("movieInfo").build());
+        lookup.tryEmitValue(movieInfo("1", "Batman Begins"));
+
+        var movieInfo = movieInfoCache.get("1", movieId -> Mono.just(movieInfo(movieId, "Batman Begins (Director's Cut)"))).block();
+
+        // Assert (loaded again, rather than the outdated movie info being served for the rest of its ttl)
+        assertEquals("Batman Begins (Director's Cut)", movieInfo.getName());
+    }
+
+    private static MovieInfo movieInfo(String movieId, String name) {
+        return new MovieInfo(movieId, name, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+    }
+}
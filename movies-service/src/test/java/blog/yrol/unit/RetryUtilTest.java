@@ -0,0 +1,149 @@
+package blog.yrol.unit;
+
+import blog.yrol.exception.MoviesInfoClientException;
+import blog.yrol.exception.MoviesInfoServerException;
+import blog.yrol.util.Deadline;
+import blog.yrol.util.RequestBudget;
+import blog.yrol.util.RetryPolicy;
+import blog.yrol.util.RetryUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetryUtilTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicInteger subscriptions;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        subscriptions = new AtomicInteger();
+    }
+
+    @Test
+    void testRetrySpec_whenServerExceptionThrown_retryMaxRetriesAndThrowActualException() {
+
+        // Arrange
+        var retryPolicy = retryPolicy(new RequestBudget(0.2, 10));
+
+        // Act
+        var result = failingCall(new MoviesInfoServerException("Server Exception in MoviesInfoService"))
+                .retryWhen(RetryUtil.retrySpec(retryPolicy));
+
+        // Assert
+        StepVerifier.create(result)
+                .expectErrorMessage("Server Exception in MoviesInfoService")
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(4, subscriptions.get());
+        assertEquals(3, meterRegistry.get("movies.client.retries").counter().count());
+    }
+
+    @Test
+    void testRetrySpec_whenClientExceptionThrown_doNotRetry() {
+
+        // Arrange
+        var retryPolicy = retryPolicy(new RequestBudget(0.2, 10));
+
+        // Act
+        var result = failingCall(new MoviesInfoClientException("No such movie exist for the ID: 1", 404))
+                .retryWhen(RetryUtil.retrySpec(retryPolicy));
+
+        // Assert
+        StepVerifier.create(result)
+                .expectError(MoviesInfoClientException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    void testRetrySpec_whenBudgetExhausted_stopRetrying() {
+
+        // Arrange - one token for retries
+        var retryPolicy = retryPolicy(new RequestBudget(0.2, 1));
+
+        // Act
+        var result = failingCall(new MoviesInfoServerException("Server Exception in MoviesInfoService"))
+                .retryWhen(RetryUtil.retrySpec(retryPolicy));
+
+        // Assert
+        StepVerifier.create(result)
+                .expectError(MoviesInfoServerException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(2, subscriptions.get());
+        assertEquals(1, meterRegistry.get("movies.client.retry.budget.exhausted").counter().count());
+    }
+
+    @Test
+    void testRetrySpec_whenDeadlineExpiresBeforeBackoff_stopRetrying() {
+
+        // Arrange
+        var retryPolicy = retryPolicy(new RequestBudget(0.2, 10));
+
+        // Act - the deadline has already expired
+        var result = failingCall(new MoviesInfoServerException("Server Exception in MoviesInfoService"))
+                .retryWhen(RetryUtil.retrySpec(retryPolicy))
+                .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ZERO)));
+
+        // Assert
+        StepVerifier.create(result)
+                .expectError(MoviesInfoServerException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    void testRequestBudget_whenDeposited_allowRatioOfRetries() {
+
+        // Arrange
+        var budget = new RequestBudget(0.2, 10);
+        while (budget.tryWithdraw()) {
+            // draining the initial tokens
+        }
+
+        // Act - 5 calls with the ratio of 0.2 deposits 1 token
+        for (int i = 0; i < 5; i++) {
+            budget.deposit();
+        }
+
+        // Assert
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    void testBackoff_whenRetried_stayWithinExponentialCeiling() {
+
+        // Arrange
+        var retryPolicy = retryPolicy(new RequestBudget(0.2, 10));
+
+        // Act & Assert
+        for (int i = 0; i < 100; i++) {
+            assertTrue(retryPolicy.backoff(0).toMillis() <= 10);
+            assertTrue(retryPolicy.backoff(2).toMillis() <= 40);
+            assertTrue(retryPolicy.backoff(10).toMillis() <= 50);
+        }
+    }
+
+    private RetryPolicy retryPolicy(RequestBudget budget) {
+        return new RetryPolicy("test", 3, Duration.ofMillis(10), Duration.ofMillis(50), budget, meterRegistry);
+    }
+
+    private Mono<String> failingCall(RuntimeException exception) {
+        return Mono.defer(() -> {
+            subscriptions.incrementAndGet();
+            return Mono.error(exception);
+        });
+    }
+}
@@ -0,0 +1,166 @@
+package blog.yrol.unit;
+
+import blog.yrol.exception.DeadlineExceededException;
+import blog.yrol.util.Deadline;
+import blog.yrol.util.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SingleFlight<String, String> singleFlight;
+
+    private AtomicInteger subscriptions;
+    private AtomicBoolean cancelled;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight<>("test", meterRegistry);
+        subscriptions = new AtomicInteger();
+        cancelled = new AtomicBoolean();
+    }
+
+    @Test
+    void testMono_whenCalledConcurrentlyForTheSameKey_shareOneCall() {
+
+        // Arrange
+        var source = Mono.delay(Duration.ofMillis(100))
+                .map(tick -> "Batman Begins")
+                .doOnSubscribe(subscription -> subscriptions.incrementAndGet());
+
+        // Act (merge subscribes to both calls at once)
+        var results = Flux.merge(
+                singleFlight.mono("abc", () -> source),
+                singleFlight.mono("abc", () -> source));
+
+        // Assert
+        StepVerifier.create(results)
+                .expectNext("Batman Begins", "Batman Begins")
+                .verifyComplete();
+
+        assertEquals(1, subscriptions.get());
+        assertEquals(0.5, meterRegistry.get("movies.client.coalescing.ratio").gauge().value());
+    }
+
+    @Test
+    void testFlux_whenCalledOneAfterAnother_executeEachCall() {
+
+        // Arrange
+        var source = Flux.just("review 1", "review 2")
+                .doOnSubscribe(subscription -> subscriptions.incrementAndGet());
+
+        // Act & Assert
+        StepVerifier.create(singleFlight.flux("abc", () -> source))
+                .expectNext("review 1", "review 2")
+                .verifyComplete();
+
+        StepVerifier.create(singleFlight.flux("abc", () -> source))
+                .expectNext("review 1", "review 2")
+                .verifyComplete();
+
+        assertEquals(2, subscriptions.get());
+    }
+
+    @Test
+    void testMono_whenCalledAsSoonAsTheCallFailed_executeTheCallAgain() {
+
+        // Arrange
+        var source = Mono.<String>error(new IllegalStateException("Server down"))
+                .doOnSubscribe(subscription -> subscriptions.incrementAndGet());
+        var retried = new ArrayList<String>();
+
+        // Act (calling again from the error signal of the first call, before it's been fully terminated)
+        StepVerifier.create(singleFlight.mono("abc", () -> source)
+                        .doOnError(ex -> singleFlight.mono("abc", () -> Mono.just("Batman Begins"))
+                                .subscribe(retried::add, error -> retried.add(error.getMessage()))))
+                .expectErrorMessage("Server down")
+                .verify();
+
+        // Assert
+        assertEquals(List.of("Batman Begins"), retried);
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    void testMono_whenOneWaiterCancels_doNotCancelTheSharedCallForTheOthers() {
+
+        // Arrange
+        var sink = Sinks.<String>one();
+        var source = sink.asMono()
+                .doOnSubscribe(subscription -> subscriptions.incrementAndGet())
+                .doOnCancel(() -> cancelled.set(true));
+        var secondResult = new AtomicReference<String>();
+
+        // Act
+        var firstWaiter = singleFlight.mono("abc", () -> source).subscribe();
+        singleFlight.mono("abc", () -> source).subscribe(secondResult::set);
+
+        firstWaiter.dispose();
+        sink.tryEmitValue("Batman Begins");
+
+        // Assert
+        assertFalse(cancelled.get());
+        assertEquals("Batman Begins", secondResult.get());
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    void testMono_whenAllWaitersCancel_cancelTheSharedCall() {
+
+        // Arrange
+        var sink = Sinks.<String>one();
+        var source = sink.asMono()
+                .doOnCancel(() -> cancelled.set(true));
+
+        // Act
+        var firstWaiter = singleFlight.mono("abc", () -> source).subscribe();
+        var secondWaiter = singleFlight.mono("abc", () -> source).subscribe();
+
+        firstWaiter.dispose();
+        secondWaiter.dispose();
+
+        // Assert
+        assertTrue(cancelled.get());
+    }
+
+    @Test
+    void testMono_whenWaitersHaveDifferentDeadlines_doNotShareTheCall() {
+
+        // Arrange (a downstream call giving up once the deadline of its context has passed, as the downstream services do)
+        var source = Mono.deferContextual(context -> {
+                    subscriptions.incrementAndGet();
+                    var call = Mono.delay(Duration.ofMillis(200)).map(tick -> "Batman Begins");
+
+                    return Deadline.from(context)
+                            .map(deadline -> call.timeout(deadline.remaining(), Mono.error(() -> new DeadlineExceededException("Request deadline exceeded"))))
+                            .orElse(call);
+                });
+
+        // Act (the first waiter has a shorter deadline than the call takes, the second one a longer deadline)
+        var firstWaiter = Deadline.within(singleFlight.mono("abc", () -> source), Duration.ofMillis(50));
+        var secondWaiter = Deadline.within(singleFlight.mono("abc", () -> source), Duration.ofSeconds(1));
+
+        // Assert (only the first waiter misses its deadline, the second one isn't failed by it)
+        StepVerifier.create(Flux.merge(firstWaiter.onErrorReturn(DeadlineExceededException.class, "deadline exceeded"), secondWaiter))
+                .expectNext("deadline exceeded", "Batman Begins")
+                .verifyComplete();
+
+        assertEquals(2, subscriptions.get());
+    }
+}